@@ -2,7 +2,19 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.PrimitiveIterator;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 
 /**
  * the main class that will utilize prQuadTree and HashTable implementations to create a GIS database that can perform
@@ -17,28 +29,97 @@ public class GIS
     // RandomAccessFile fields
     private static RandomAccessFile database;
     private static RandomAccessFile commandScript;
-    private static RandomAccessFile log; 
+    
+    // log field, buffered in front of the log file
+    private static logWriter log;
+    private static boolean logAsync = false; // -logmode async writes the log on a background thread
+    
+    // per command timings, -trace on the command line
+    private static String traceFileName;
+    private static logWriter trace;
+    
+    // per command type latencies, shown by show stats
+    private static LinkedHashMap<String, latencyHistogram> latencies = new LinkedHashMap<String, latencyHistogram>();
+    private static int statsEvery = 0; // commands between stats dumps to the log, -statsevery on the command line
     
     // file field 
     private static File databaseFile;
     
+    // memory mapped view of the database
+    private static recordStore store;
+    
     // prQuadTree field 
-    private static prQuadTree quadtree;
+    private static prQuadTree<gisEntry> quadtree;
     
-    // hashtable field
-    private static hashtable<dataEntry> table;
+    // name index field
+    private static nameIndex<dataEntry> table;
+    private static String indexName; // name index kind, -index on the command line (default set by options())
     
     // bufferPool field
     private static bufferPool pool;
+    private static int poolCapacity = 15; // records held, -pool on the command line
+    private static String poolPolicyName = "lru"; // replacement policy, -policy on the command line
+    
+    // block cache settings, the database file is memory mapped unless -cache is given
+    private static int cacheBlocks = 0; // blocks held, -cache on the command line
+    private static int cacheBlockSize = 16384; // bytes per block, -block on the command line
+    private static boolean cacheDirect = false; // -cachemem direct keeps the blocks off the heap
+    private static int cacheReadAhead = 4; // blocks read ahead, -readahead on the command line
     
     // command line number
     private static int commandNumber = -1;
     
+    // parallel queries, -exec on the command line
+    private static boolean parallel = false; // true to run runs of queries concurrently
+    private static final int parallelBatchSize = 256; // most queries held back at once
+    private static ArrayList<queryRun> batch = new ArrayList<queryRun>(); // queries waiting to run
+    private static ForkJoinPool commandPool; // started with the first batch
+    
+    // background imports, -import on the command line
+    private static boolean backgroundImport = false; // true to keep answering queries while an import runs
+    private static ExecutorService importThread; // started with the first background import
+    private static Future<Void> runningImport; // the import in progress, null when there is none
+    private static int runningImportNumber; // its command number
+    private static long runningImportStart; // when it was handed off, for its latency
+    
+    // offsets read per what_is_in batch
+    private static final int regionBatchSize = 4096;
+    
+    // GIS record field names, in column order, for what_is_in -long
+    private static final String[] fieldLabels = { "Feature ID", "Feature Name", "Feature Cat", "State",
+        "State Code", "County Name", "County Code", "Latitude", "Longitude", "Dec. Latitude",
+        "Dec. Longitude", "Src Latitude", "Src Longitude", "Src Dec. Latitude", "Src Dec. Longitude",
+        "Elev in meters", "Elev in feet", "USGS Quad", "Date created", "Date modified" };
+    
+    // snapshot fields
+    private static File snapshotFile;
+    private static snapshot warmSnapshot; // snapshot that may still be reused by this run
+    private static ArrayList<String> pendingImports = new ArrayList<String>(); // matched, not yet applied
+    private static ArrayList<snapshot.sourceFile> importedFiles = new ArrayList<snapshot.sourceFile>();
+    private static boolean snapshotStale = false; // imports not yet written to the snapshot
+    private static String worldArgs;
+    
     /**
      * main method. executes the behavior of the entire project.
      * 
      * designed for specific command line parameters:
-     * main (<database file name> ,<command script file name>, <log file name>)
+     * main ([options], <database file name> ,<command script file name>, <log file name>)
+     * 
+     * options:
+     *      -pool <n> : number of records the buffer pool holds (default 15)
+     *      -policy <lru|2q|tinylfu> : buffer pool replacement policy (default lru)
+     *      -cache <n> : read records through a cache of n file blocks instead of mapping the file
+     *      -block <bytes> : block cache block size, 4096 to 65536 (default 16384)
+     *      -cachemem <heap|direct> : where the block cache keeps its blocks (default heap)
+     *      -readahead <n> : blocks the cache reads ahead of a sequential miss (default 4)
+     *      -logmode <buffered|async> : write the log from the command thread or a background thread (default buffered)
+     *      -trace <file> : write "number, command, nanoseconds" for every command to file
+     *      -statsevery <n> : write the show stats report to the log every n commands
+     *      -exec <serial|parallel> : run consecutive queries one at a time or concurrently (default serial)
+     *      -index <probe|concurrent> : name index, open addressing or lock-striped (default probe)
+     *      -import <foreground|background> : run each import on the command thread, or on a thread
+     *          of its own while the queries after it go on (default foreground, background needs
+     *          the concurrent name index and is its default)
      * 
      * @param args : command line arguments
      * args[0] = database file name 
@@ -51,12 +132,17 @@ public class GIS
     {
         // VALIDATE COMMAND LINE PARAMETERS 
         //
-        // check proper number of arguments
-        if (args.length != 3)
+        // strip the options off the front, then check proper number of arguments
+        args = options(args);
+        if (args == null || args.length != 3)
         {
             // display error message and exit runtime
             System.out.println("Invalid parameters \nMake certain you are following the formatting:"
-                + " GIS <database file name> <command script file name> <log file name>");
+                + " GIS [-pool <n>] [-policy <lru|2q|tinylfu>] [-cache <n>] [-block <bytes>]"
+                + " [-cachemem <heap|direct>] [-readahead <n>] [-logmode <buffered|async>] [-trace <file>]"
+                + " [-statsevery <n>] [-exec <serial|parallel>] [-index <probe|concurrent>]"
+                + " [-import <foreground|background>]"
+                + " <database file name> <command script file name> <log file name>");
             System.exit(0);
         }        
         // attempt to validate command script file name
@@ -71,19 +157,56 @@ public class GIS
             System.exit(0);
         }
         
-        // CREATE HASHTABLE
+        // CREATE NAME INDEX
         //
-        table = new hashtable<dataEntry>(256, 0.7);
+        table = nameIndex.forName(indexName);
         
-        // CREATE A NEW GIS DATABASE FILE
+        // OPEN THE GIS DATABASE FILE
         // 
+        // the database is kept if a snapshot of it exists, since the script may import the
+        // same files again. otherwise a new database is started
         database = new RandomAccessFile(args[0], "rw");
-        database.setLength(0);
+        snapshotFile = new File(args[0] + ".snap");
+        warmSnapshot = snapshot.readHeader(snapshotFile);
+        if (warmSnapshot == null || database.length() != warmSnapshot.databaseLength())
+        {
+            warmSnapshot = null;
+            database.setLength(0);
+        }
+        store = new recordStore(database, (cacheBlocks == 0) ? null
+            : new blockCache(database.getChannel(), cacheBlockSize, cacheBlocks, cacheDirect, cacheReadAhead));
         
         // CREATE LOG FILE
         //
-        log = new RandomAccessFile(args[2], "rw");
-        log.setLength(0);
+        RandomAccessFile logFile = new RandomAccessFile(args[2], "rw");
+        logFile.setLength(0);
+        log = new logWriter(logFile, logWriter.defaultBufferSize, logAsync);
+        
+        // CREATE TRACE FILE
+        //
+        if (traceFileName != null)
+        {
+            RandomAccessFile traceFile = new RandomAccessFile(traceFileName, "rw");
+            traceFile.setLength(0);
+            trace = new logWriter(traceFile);
+        }
+        
+        // whatever ends the run (quit, the end of the script, an error) the buffered log is written out
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+        {
+            try
+            {
+                log.close();
+                if (trace != null)
+                {
+                    trace.close();
+                }
+            }
+            catch (IOException e)
+            {
+                System.out.println("Could not write the log file: " + e.getMessage());
+            }
+        }));
         
         // DATABASE PARSING
         //
@@ -120,6 +243,49 @@ public class GIS
             // from this point onwards, currCommand will ALWAYS be a valid command line
             // so, iterate commandNumber
             commandNumber++;
+            long commandStart = System.nanoTime();
+            
+            // QUERY HANDOFF
+            //
+            // what_is, what_is_at, what_is_near and what_is_in only read the indexes. in
+            // parallel mode they are collected into a batch that runs once a command that is
+            // not a query (or the end of the script) is reached
+            if (isQuery(currCommand[0]))
+            {
+                // every query needs the indexes that the imports matched against the snapshot would have built
+                resolveSnapshot();
+                
+                queryRun run = new queryRun(currCommand, commandNumber);
+                if (parallel)
+                {
+                    batch.add(run);
+                    if (batch.size() == parallelBatchSize)
+                    {
+                        runBatch();
+                    }
+                }
+                else
+                {
+                    run.out = log;
+                    runQuery(run);
+                    commandDone(currCommand[0], commandNumber, System.nanoTime() - commandStart);
+                }
+                continue;
+            }
+            
+            // every other command waits for the queries ahead of it, and for an import still
+            // running in the background
+            runBatch();
+            finishImport();
+            
+            // SNAPSHOT HANDOFF
+            //
+            // every command other than import (or a world command ahead of the imports) needs
+            // the indexes that the imports matched against the snapshot would have built
+            if (!currCommand[0].contains("import") && !(currCommand[0].contains("world") && pendingImports.isEmpty()))
+            {
+                resolveSnapshot();
+            }
             
             // "WORLD" COMMAND HANDOFF
             //
@@ -152,319 +318,1143 @@ public class GIS
                 }
             }
             
-            // "WHAT_IS" COMMAND HANDOFF
-            //
-            if (currCommand[0].equals("what_is"))
-            {  
-                // sentinel boolean representing if elem is found in pool
-                boolean inPool = false;
-                
-                // CHECKS BUFFERPOOL
-                //
-                // if uninstantiated
-                if (pool == null)
-                {
-                    pool = new bufferPool();
-                }
-                for (int idx = 0; idx < pool.size(); idx++)
+            // TIMING
+            //
+            // an import handed to the background is timed once it is done, by finishImport()
+            if (runningImport == null || runningImportNumber != commandNumber)
+            {
+                commandDone(currCommand[0], commandNumber, System.nanoTime() - commandStart);
+            }
+        } 
+        
+        // queries at the end of a script with no quit
+        runBatch();
+        finishImport();
+        saveSnapshot();
+    }
+    
+    /**
+     * one query command, run either straight onto the log or as part of a parallel batch.
+     * in a batch the query logs into its own memory writer and only notes the records it
+     * fetches for the buffer pool; both are applied in command order once it is done
+     */
+    private static class queryRun
+    {
+        String[] command; // the split command line
+        int number; // command number
+        logWriter out; // where the query logs
+        boolean deferred = false; // true to leave the buffer pool to commit()
+        ArrayList<Long> fetchedOffsets; // records fetched for the pool, in order (deferred only)
+        ArrayList<ByteBuffer> fetchedRecords;
+        int results = 0; // records logged
+        long elapsed; // nanoseconds taken (batched only)
+        Exception failure; // what stopped the query (batched only)
+        
+        /**
+         * constructor for a query run
+         * 
+         * @param command : the split command line
+         * @param number : its command number
+         */
+        queryRun(String[] command, int number)
+        {
+            this.command = command;
+            this.number = number;
+        }
+    }
+    
+    /**
+     * helper method that tells the read-only commands apart, the ones that can run in a batch
+     * 
+     * @param type : the command name
+     * @return true for what_is, what_is_at, what_is_near and what_is_in
+     */
+    private static boolean isQuery(String type)
+    {
+        return type.equals("what_is") || type.contains("what_is_at") || type.contains("what_is_near")
+            || type.contains("what_is_in");
+    }
+    
+    /**
+     * helper method that executes one query command
+     * 
+     * @param run : the query, its output goes to run.out
+     * @throws IOException 
+     */
+    private static void runQuery(queryRun run) throws IOException
+    {
+        // flight recorder event, with the quadtree nodes this thread opened for the query
+        gisEvents.query event = new gisEvents.query();
+        event.begin();
+        long visitedBefore = (quadtree == null) ? 0 : quadtree.threadNodesVisited();
+        
+        // only the pool is written by a query, and only when it is not deferred
+        if (!run.deferred && usesPool(run.command[0]) && pool == null)
+        {
+            pool = new bufferPool(poolCapacity, poolPolicy.forName(poolPolicyName, poolCapacity));
+        }
+        
+        String type = run.command[0];
+        if (type.equals("what_is"))
+        {
+            // feature name, state
+            run.results = what_is(run);
+        }
+        else if (type.contains("what_is_at"))
+        {
+            // lat, long
+            run.results = what_is_at(run);
+        }
+        else if (type.contains("what_is_near"))
+        {
+            // optional -filter <class> switch, then lat, long, count and an optional max radius
+            run.results = what_is_near(run);
+        }
+        else
+        {
+            // optional -long or -filter <class> switch, then lat, long, half height, half width
+            run.results = what_is_in(run);
+        }
+        
+        if (event.shouldCommit())
+        {
+            event.commandNumber = run.number;
+            event.command = type;
+            event.arguments = String.join("\t", Arrays.copyOfRange(run.command, 1, run.command.length));
+            event.nodesVisited = (quadtree == null) ? 0 : quadtree.threadNodesVisited() - visitedBefore;
+            event.results = run.results;
+            event.commit();
+        }
+    }
+    
+    /**
+     * helper method that tells whether a query reads its records through the buffer pool
+     * 
+     * @param type : the command name
+     * @return true for what_is and what_is_at
+     */
+    private static boolean usesPool(String type)
+    {
+        return type.equals("what_is") || type.contains("what_is_at");
+    }
+    
+    /**
+     * helper method that runs the batched queries concurrently and then applies them in
+     * command order: each query's log output is appended to the log and its record fetches
+     * are replayed against the buffer pool, so the log, the pool and its counters end up
+     * exactly as if the queries had run one at a time
+     * 
+     * a query that fails is applied up to the point it failed and its error is thrown; the
+     * queries after it are dropped, as the serial loop would never have reached them
+     * 
+     * @throws Exception 
+     */
+    private static void runBatch() throws Exception
+    {
+        if (batch.isEmpty())
+        {
+            return;
+        }
+        if (commandPool == null)
+        {
+            commandPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        
+        try
+        {
+            // RUN
+            ArrayList<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(batch.size());
+            for (queryRun run : batch)
+            {
+                run.out = new logWriter(4096);
+                run.deferred = true;
+                run.fetchedOffsets = new ArrayList<Long>();
+                run.fetchedRecords = new ArrayList<ByteBuffer>();
+                
+                tasks.add(commandPool.submit(() ->
+                {
+                    long start = System.nanoTime();
+                    try
+                    {
+                        runQuery(run);
+                    }
+                    catch (Exception e)
+                    {
+                        run.failure = e;
+                    }
+                    run.elapsed = System.nanoTime() - start;
+                }));
+            }
+            
+            // APPLY, in order, as each one finishes
+            for (int idx = 0; idx < batch.size(); idx++)
+            {
+                tasks.get(idx).join();
+                queryRun run = batch.get(idx);
+                
+                run.out.writeTo(log);
+                if (usesPool(run.command[0]))
+                {
+                    if (pool == null)
+                    {
+                        pool = new bufferPool(poolCapacity, poolPolicy.forName(poolPolicyName, poolCapacity));
+                    }
+                    
+                    // the lookups pooledRecord() would have made
+                    for (int jdx = 0; jdx < run.fetchedOffsets.size(); jdx++)
+                    {
+                        Long offset = run.fetchedOffsets.get(jdx);
+                        if (pool.find(offset) == null)
+                        {
+                            pool.insert(offset, recordStore.decode(run.fetchedRecords.get(jdx)));
+                        }
+                    }
+                }
+                
+                if (run.failure != null)
+                {
+                    throw run.failure;
+                }
+                commandDone(run.command[0], run.number, run.elapsed);
+            }
+        }
+        finally
+        {
+            batch.clear();
+        }
+    }
+    
+    /**
+     * helper method that records a finished command: its latency, its trace line and, when
+     * one is due, the periodic stats report
+     * 
+     * @param type : the command name
+     * @param number : its command number
+     * @param elapsed : nanoseconds it took
+     * @throws IOException 
+     */
+    private static void commandDone(String type, int number, long elapsed) throws IOException
+    {
+        latencyHistogram histogram = latencies.get(type);
+        if (histogram == null)
+        {
+            histogram = new latencyHistogram();
+            latencies.put(type, histogram);
+        }
+        histogram.record(elapsed);
+        
+        if (trace != null)
+        {
+            trace.writeBytes(number + "\t" + type + "\t" + elapsed + "\n");
+        }
+        
+        // periodic stats dump
+        if (statsEvery > 0 && (number + 1) % statsEvery == 0)
+        {
+            log.writeBytes("------------------------------------------------------------------" + "\n");
+            log.writeBytes("Stats after command " + number + "\n\n");
+            logStats();
+        }
+    }
+    
+    /**
+     * helper method that reads the options at the front of the command line
+     * 
+     * @param args : command line arguments
+     * @return the arguments after the options; null if an option is malformed
+     */
+    private static String[] options(String[] args)
+    {
+        int idx = 0;
+        while (idx < args.length && args[idx].startsWith("-"))
+        {
+            // every option takes a value
+            if (idx + 1 >= args.length)
+            {
+                return null;
+            }
+            
+            try
+            {
+                // buffer pool capacity
+                if (args[idx].equals("-pool"))
+                {
+                    poolCapacity = Integer.parseInt(args[idx + 1]);
+                    if (poolCapacity < 1)
+                    {
+                        return null;
+                    }
+                }
+                // buffer pool replacement policy
+                else if (args[idx].equals("-policy"))
+                {
+                    poolPolicyName = args[idx + 1];
+                    if (poolPolicy.forName(poolPolicyName, 1) == null)
+                    {
+                        return null;
+                    }
+                }
+                // block cache size
+                else if (args[idx].equals("-cache"))
+                {
+                    cacheBlocks = Integer.parseInt(args[idx + 1]);
+                    if (cacheBlocks < 2)
+                    {
+                        return null;
+                    }
+                }
+                // block cache block size
+                else if (args[idx].equals("-block"))
+                {
+                    cacheBlockSize = Integer.parseInt(args[idx + 1]);
+                    if (cacheBlockSize < blockCache.minBlockSize || cacheBlockSize > blockCache.maxBlockSize
+                        || Integer.bitCount(cacheBlockSize) != 1)
+                    {
+                        return null;
+                    }
+                }
+                // block cache memory
+                else if (args[idx].equals("-cachemem"))
+                {
+                    if (!args[idx + 1].equals("heap") && !args[idx + 1].equals("direct"))
+                    {
+                        return null;
+                    }
+                    cacheDirect = args[idx + 1].equals("direct");
+                }
+                // per command timings
+                else if (args[idx].equals("-trace"))
+                {
+                    traceFileName = args[idx + 1];
+                }
+                // periodic stats dump
+                else if (args[idx].equals("-statsevery"))
+                {
+                    statsEvery = Integer.parseInt(args[idx + 1]);
+                    if (statsEvery < 1)
+                    {
+                        return null;
+                    }
+                }
+                // query execution mode
+                else if (args[idx].equals("-exec"))
+                {
+                    if (!args[idx + 1].equals("serial") && !args[idx + 1].equals("parallel"))
+                    {
+                        return null;
+                    }
+                    parallel = args[idx + 1].equals("parallel");
+                }
+                // log writer mode
+                else if (args[idx].equals("-logmode"))
+                {
+                    if (!args[idx + 1].equals("buffered") && !args[idx + 1].equals("async"))
+                    {
+                        return null;
+                    }
+                    logAsync = args[idx + 1].equals("async");
+                }
+                // name index kind
+                else if (args[idx].equals("-index"))
+                {
+                    indexName = args[idx + 1];
+                    if (nameIndex.forName(indexName) == null)
+                    {
+                        return null;
+                    }
+                }
+                // import mode
+                else if (args[idx].equals("-import"))
+                {
+                    if (!args[idx + 1].equals("foreground") && !args[idx + 1].equals("background"))
+                    {
+                        return null;
+                    }
+                    backgroundImport = args[idx + 1].equals("background");
+                }
+                // block cache read-ahead
+                else if (args[idx].equals("-readahead"))
+                {
+                    cacheReadAhead = Integer.parseInt(args[idx + 1]);
+                    if (cacheReadAhead < 0)
+                    {
+                        return null;
+                    }
+                }
+                else
+                {
+                    return null;
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                return null;
+            }
+            
+            idx += 2;
+        }
+        
+        // a background import writes the name index while queries read it, which only the
+        // concurrent index allows
+        if (indexName == null)
+        {
+            indexName = backgroundImport ? "concurrent" : "probe";
+        }
+        else if (backgroundImport && !indexName.equals("concurrent"))
+        {
+            return null;
+        }
+        
+        return Arrays.copyOfRange(args, idx, args.length);
+    }
+    
+    /**
+     *  Helper method used to process "world" command from command script
+     *  
+     *  westLong, eastLong, southLat, northLat
+     *  
+     * @throws Exception 
+     */
+    public static void world(String westLong, String eastLong, String southLat, String northLat) throws Exception
+    {
+        // convert values in terms of world creation (DMS to seconds)
+        // sum with actual seconds
+        long xMin = convertLong(westLong);
+        long xMax = convertLong(eastLong);
+        long yMin = convertLat(southLat);
+        long yMax = convertLat(northLat);
+                
+        // create new tree with converted values. with background imports the tree copies on
+        // write, so queries read the tree as it was before the import until the import
+        // publishes its new root
+        quadtree = new prQuadTree<gisEntry>(xMin, xMax, yMin, yMax, 1, backgroundImport);
+        
+        // a snapshot of a different world is of no use
+        worldArgs = westLong + " " + eastLong + " " + southLat + " " + northLat;
+        if (warmSnapshot != null && !warmSnapshot.world().equals(worldArgs))
+        {
+            resolveSnapshot();
+        }
+        
+        // OUTPUT
+        // 
+        // header
+        log.writeBytes("------------------------------------------------------------------\n");
+        log.writeBytes("world\t" + westLong + " " + eastLong + " " + southLat + " " + northLat + "\n\n");
+        log.writeBytes("The dimensions of the world are\n");
+        
+        // coordinates
+        log.writeBytes("\t\t\t" + yMax + "\n");
+        log.writeBytes("\t\t" + xMin + "\t\t" + xMax + "\n");
+        log.writeBytes("\t\t\t" + yMin + "\n");               
+    }
+    
+    /**
+     * Adds parametized GIS file data to our database
+     * 
+     * @throws Exception 
+     */
+    public static void importCommand(String appendFileName) throws Exception
+    {
+        // header for log file
+        log.writeBytes("------------------------------------------------------------------\n");
+        log.writeBytes("Command " + commandNumber + "\timport " + appendFileName + "\n"); 
+        
+        // the snapshot imported this same file at this point, so defer the work until the
+        // indexes are actually needed
+        if (warmSnapshot != null && warmSnapshot.matchesImport(pendingImports.size(), new File(appendFileName)))
+        {
+            pendingImports.add(appendFileName);
+            return;
+        }
+        
+        // any other import means the snapshot can no longer be used
+        resolveSnapshot();
+        
+        // parse the file into the database and indexes, the snapshot is written once the
+        // script is done importing
+        if (backgroundImport)
+        {
+            startImport(appendFileName);
+        }
+        else
+        {
+            importFile(appendFileName);
+        }
+        importedFiles.add(new snapshot.sourceFile(new File(appendFileName)));
+        snapshotStale = true;
+    }
+    
+    /**
+     * hands an import to the import thread and returns at once. the queries that follow run
+     * while it does: a name the import has reached already is found with its new offsets, and
+     * the quadtree shows the whole import once it is done (the import publishes it in one
+     * write). every command other than a query waits for it first, see finishImport()
+     * 
+     * @param appendFileName : the file to import
+     */
+    private static void startImport(String appendFileName)
+    {
+        if (importThread == null)
+        {
+            // a daemon, so a run that ends in an error is not kept alive by it
+            importThread = Executors.newSingleThreadExecutor(task ->
+            {
+                Thread thread = new Thread(task, "import");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        
+        runningImportNumber = commandNumber;
+        runningImportStart = System.nanoTime();
+        runningImport = importThread.submit(() ->
+        {
+            importFile(appendFileName);
+            return null;
+        });
+    }
+    
+    /**
+     * waits for the background import in progress, if there is one, and records its latency
+     * 
+     * @throws Exception if the import failed
+     */
+    private static void finishImport() throws Exception
+    {
+        if (runningImport == null)
+        {
+            return;
+        }
+        
+        Future<Void> pending = runningImport;
+        runningImport = null;
+        try
+        {
+            pending.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Exception)
+            {
+                throw (Exception)e.getCause();
+            }
+            throw e;
+        }
+        
+        commandDone("import", runningImportNumber, System.nanoTime() - runningImportStart);
+    }
+    
+    /**
+     * applies the imports that were deferred against the snapshot. if every import of the
+     * snapshot was matched and the snapshot still agrees with the database, the indexes are
+     * loaded from it. otherwise the database is started over and the deferred files are
+     * imported for real
+     * 
+     * @throws Exception 
+     */
+    private static void resolveSnapshot() throws Exception
+    {
+        // nothing deferred
+        if (warmSnapshot == null)
+        {
+            return;
+        }
+        
+        // the snapshot is consumed either way
+        snapshot candidate = warmSnapshot;
+        ArrayList<String> deferred = new ArrayList<String>(pendingImports);
+        warmSnapshot = null;
+        pendingImports.clear();
+        
+        // WARM START
+        //
+        if (quadtree != null && deferred.size() == candidate.importCount())
+        {
+            nameIndex<dataEntry> loaded = candidate.load(database, quadtree, nameIndex.forName(indexName));
+            if (loaded != null)
+            {
+                table = loaded;
+                for (int idx = 0; idx < deferred.size(); idx++)
+                {
+                    importedFiles.add(candidate.importAt(idx));
+                }
+                store.refresh();
+                return;
+            }
+        }
+        
+        // REBUILD
+        //
+        database.setLength(0);
+        store.refresh();
+        for (String appendFileName : deferred)
+        {
+            importFile(appendFileName);
+            importedFiles.add(new snapshot.sourceFile(new File(appendFileName)));
+        }
+        if (!deferred.isEmpty())
+        {
+            snapshotStale = true;
+        }
+    }
+    
+    /**
+     * writes the snapshot if anything was imported since it was last written. called once,
+     * at quit or the end of the script: saving checksums the whole database and rewrites the
+     * whole snapshot, far too much to repeat after every import of a long run
+     * 
+     * @throws Exception 
+     */
+    private static void saveSnapshot() throws Exception
+    {
+        if (snapshotStale)
+        {
+            snapshot.save(snapshotFile, worldArgs, importedFiles, database, quadtree, table);
+            snapshotStale = false;
+        }
+    }
+    
+    /**
+     * parses a GIS file into the database, name index and quadtree
+     * 
+     * @param appendFileName : the file to import
+     * @throws Exception 
+     */
+    private static void importFile(String appendFileName) throws Exception
+    {
+        // hand the file to the staged import pipeline
+        importPipeline pipeline = new importPipeline(database, table, quadtree);
+        pipeline.run(new File(appendFileName));
+        
+        // map the new records here, before any query thread needs them
+        store.refresh();
+    }
+    
+    /**
+     * helper method to execute the behavior of the what_is command
+     * 
+     * the name index holds the offset of every record with the feature name and state,
+     * each is read from the pool if it is there and from the database otherwise
+     * 
+     * @param run : the query, indice 1 of its command is the feature name and indice 2 the state
+     * @return the number of records logged
+     * 
+     * @throws IOException 
+     */
+    private static int what_is(queryRun run) throws IOException
+    {
+        // FIND OFFSETS FROM TABLE
+        //
+        // create dataEntry object in order to use table's find()
+        dataEntry findEntry = new dataEntry(run.command[1] + ":" + run.command[2], (long)-1);
+        dataEntry foundEntry = table.find(findEntry);      
+        
+        // reused for every record of the command
+        fieldTokenizer fields = new fieldTokenizer();
+        
+        // iterate through locations
+        int logged = 0;
+        PrimitiveIterator.OfLong locations = (foundEntry == null) ? null : foundEntry.locations.iterator();
+        while (locations != null && locations.hasNext())
+        {
+            // update offset
+            long currOffset = locations.nextLong();
+            
+            // CHECKS BUFFERPOOL, then the database
+            fields.tokenize(pooledRecord(run, currOffset));
+            
+            // indice 5 contains county name
+            // indice 8 contains primary long
+            // indice 7 contains primany lat
+            // format: offset: county name (long, lat)
+            run.out.writeBytes("------------------------------------------------------------------\n" +
+                "Command " + run.number + "\twhat_is\t" + fields.field(1) + "\t"
+                + fields.field(3) + "\n");
+            
+            run.out.writeBytes("\t" + currOffset + ": " + fields.field(5) + " (" +
+                formatLong(fields.field(8)) + ", " + formatLat(fields.field(7)) + ") \n");  
+            logged++;
+        }
+        
+        return logged;
+    }
+    
+    /**
+     * helper method to execute the behavior of the what_is_at command
+     * 
+     * the coordinates are converted once and looked up in the quadtree, which holds the
+     * offset of every record at a location. only those records are read, from the pool if
+     * they are there and from the database otherwise
+     * 
+     * @param run : the query, indice 1 of its command is the raw latitude and indice 2 the raw longitude
+     * @return the number of records logged
+     * 
+     * @throws IOException 
+     */
+    private static int what_is_at(queryRun run) throws IOException
+    {
+        String rawLat = run.command[1];
+        String rawLong = run.command[2];
+        
+        // QUADTREE LOOKUP
+        //       
+        // convert raw coordinates to seconds
+        long latitude = convertLat(rawLat);
+        long longitude = convertLong(rawLong);
+        
+        // point search, offset of the probe is unused
+        gisEntry foundEntry = quadtree.find(new gisEntry(latitude, longitude, -1));
+        if (foundEntry == null)
+        {
+            return 0;
+        }
+        
+        // reused for every record at this location
+        fieldTokenizer fields = new fieldTokenizer();
+        
+        // iterate through the records at this location
+        for (PrimitiveIterator.OfLong offsets = foundEntry.getOffsets().iterator(); offsets.hasNext(); )
+        {
+            long currOffset = offsets.nextLong();
+
+            // CHECKS BUFFERPOOL, then the database
+            fields.tokenize(pooledRecord(run, currOffset));
+            
+            // log needed output
+            run.out.writeBytes("------------------------------------------------------------------\n");
+            run.out.writeBytes("Command " + run.number + "\twhat_is_at\t" + rawLat + "\t" + rawLong + "\n");
+            
+            // indice 1 is feature name
+            // indice 5 is county name
+            // indice 3 is state abbreviation
+            run.out.writeBytes("\t" + currOffset + "\t" + fields.field(1) + "\t"
+                + fields.field(5) + "\t" + fields.field(3) + "\n");
+        }
+        
+        return foundEntry.getOffsets().size();
+    }
+    
+    /**
+     * fetches a record for what_is and what_is_at. a pooled copy is used if there is one,
+     * otherwise the record is read from the database and added to the pool
+     * 
+     * a batched query reads straight from the database and leaves the pool alone, the
+     * fetch is noted and replayed against the pool when the query is applied
+     * 
+     * @param run : the query fetching the record
+     * @param offset : database offset of the record
+     * @return the record bytes
+     * @throws IOException 
+     */
+    private static ByteBuffer pooledRecord(queryRun run, Long offset) throws IOException
+    {
+        if (run.deferred)
+        {
+            ByteBuffer record = store.record(offset);
+            run.fetchedOffsets.add(offset);
+            run.fetchedRecords.add(record);
+            
+            return record;
+        }
+        
+        // CHECKS BUFFERPOOL
+        String pooled = pool.find(offset);
+        if (pooled != null)
+        {
+            return recordStore.encode(pooled);
+        }
+        
+        // CHECKS DATABASE, straight from the mapped file
+        ByteBuffer record = store.record(offset);
+        
+        // add line to pool
+        pool.insert(offset, recordStore.decode(record));
+        
+        return record;
+    }
+    
+    
+    /**
+     * helper method to execute the behavior of the what_is_in command
+     * 
+     * formats:
+     *      what_is_in  <lat>  <long>  <half height>  <half width>
+     *      what_is_in  -long  <lat>  <long>  <half height>  <half width>
+     *      what_is_in  -filter  <pop|water|structure|feature class>  <lat>  <long>  <half height>  <half width>
+     * 
+     * matches are logged as the quadtree visits them rather than collected first. offsets are
+     * gathered in fixed size batches from inside the visitor and each batch is read in sorted
+     * offset order, so memory stays bounded however large the box is and the database is read
+     * front to back within a batch
+     * 
+     * @param run : the query, its command is the split command line
+     * @return the number of records logged
+     * @throws IOException 
+     */
+    private static int what_is_in(queryRun run) throws IOException
+    {
+        String[] command = run.command;
+        
+        // OPTIONAL SWITCHES
+        //
+        int arg = 1;
+        boolean longForm = false;
+        String[] filter = null;
+        if (command[arg].equals("-long"))
+        {
+            longForm = true;
+            arg++;
+        }
+        else if (command[arg].equals("-filter"))
+        {
+            filter = featureClasses(command[arg + 1]);
+            arg += 2;
+        }
+        
+        // BOUNDING BOX
+        //
+        // half height is in seconds of latitude, half width in seconds of longitude
+        String rawLat = command[arg];
+        String rawLong = command[arg + 1];
+        long halfHeight = Long.parseLong(command[arg + 2]);
+        long halfWidth = Long.parseLong(command[arg + 3]);
+        long latitude = convertLat(rawLat);
+        long longitude = convertLong(rawLong);
+        
+        // header
+        run.out.writeBytes("------------------------------------------------------------------\n");
+        run.out.writeBytes("Command " + run.number + "\t" + String.join("\t", command) + "\n\n");
+        
+        // REGION QUERY
+        //
+        // log every record at the matching locations, a batch of offsets at a time, as the
+        // quadtree visits them. batched and matches are updated by the visitor
+        long[] batch = new long[regionBatchSize];
+        int[] batched = { 0 };
+        int[] matches = { 0 };
+        boolean keepLong = longForm;
+        String[] keep = filter;
+        try
+        {
+            quadtree.forEachInRegion(longitude - halfWidth, longitude + halfWidth,
+                latitude - halfHeight, latitude + halfHeight, currEntry ->
+            {
+                for (PrimitiveIterator.OfLong offsets = currEntry.getOffsets().iterator(); offsets.hasNext(); )
+                {
+                    batch[batched[0]++] = offsets.nextLong();
+                    if (batched[0] == batch.length)
+                    {
+                        try
+                        {
+                            matches[0] += logRegionBatch(run, batch, batched[0], keepLong, keep);
+                        }
+                        catch (IOException e)
+                        {
+                            throw new UncheckedIOException(e);
+                        }
+                        batched[0] = 0;
+                    }
+                }
+                
+                // every location in the box is wanted
+                return true;
+            });
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+        matches[0] += logRegionBatch(run, batch, batched[0], longForm, filter);
+        
+        // trailer, the count is only known once everything has been logged
+        run.out.writeBytes("\tFound " + matches[0] + " feature(s) in (" + formatLat(rawLat) + " +/- " + halfHeight
+            + ", " + formatLong(rawLong) + " +/- " + halfWidth + ")\n");
+        
+        return matches[0];
+    }
+    
+    /**
+     * logs one batch of what_is_in matches in offset order. region results are not added
+     * to the buffer pool, a large box would flush every record it holds
+     * 
+     * @param run : the query being logged
+     * @param batch : database offsets, only the first count are used
+     * @param count : number of offsets in the batch
+     * @param longForm : true to log every non-empty field of each record
+     * @param filter : feature classes to keep; null to keep everything
+     * @return the number of records logged
+     * @throws IOException 
+     */
+    private static int logRegionBatch(queryRun run, long[] batch, int count, boolean longForm, String[] filter) throws IOException
+    {
+        // sequential reads through the database
+        Arrays.sort(batch, 0, count);
+        
+        // reused for every record of the batch
+        fieldTokenizer fields = new fieldTokenizer();
+        
+        int logged = 0;
+        for (int idx = 0; idx < count; idx++)
+        {
+            fields.tokenize(store.record(batch[idx]));
+            
+            // skip records the filter rules out
+            if (!matchesFilter(fields, filter))
+            {
+                continue;
+            }
+            logged++;
+            
+            // LONG FORM: every non-empty field, labelled
+            if (longForm)
+            {
+                for (int field = 0; field < fieldLabels.length; field++)
                 {
-                    // if feature name is a subsequence of pool entry
-                    if (pool.get(idx).contains(currCommand[1]))
+                    String value = fields.field(field);
+                    if (value.isEmpty())
                     {
-                        // update sentinel
-                        inPool = true;
-                        
-                        // the line being parsed
-                        String currentData = pool.get(idx);
-                        
-                        // add line to front of pool
-                        pool.insert(currentData);
-                        
-                        // grab and log needed data
-                        String[] lineInformation = currentData.split("\\|");
-                        
-                        // indice 5 contains county name
-                        // indice 8 contains primary long
-                        // indice 7 contains primany lat
-                        // format: offset: county name (long, lat)
-                        
-                        // FIND OFFSET FROM TABLE
-                        // 
-                        // create new dataEntry object to utilize find()
-                        dataEntry poolFindEntry = new dataEntry(currCommand[1] + ":" + currCommand[2], (long)-1);
-                        dataEntry poolFoundEntry = table.find(poolFindEntry);    
-                        // find offset using table 
-                        Long poolOffset = poolFoundEntry.locations.get(0);
-                        
-                        log.writeBytes("------------------------------------------------------------------\n" +
-                            "Command " + commandNumber + "\twhat_is\t" + lineInformation[1] + "\t" + lineInformation[3] + "\n");
+                        continue;
+                    }
                     
-                        log.writeBytes("\t" + poolOffset + ": " + lineInformation[5] + " (" +
-                            formatLong(lineInformation[8]) + ", " + formatLat(lineInformation[7]) + ") \n");
+                    // indice 7 and 8 are the primary lat and long
+                    if (field == 7)
+                    {
+                        value = formatLat(value);
                     }
-                }               
-                
-                // if entry was not found to be in the pool, begin to check database
-                if (!inPool)
-                {
-                    // CHECKS DATABASE
-                    //
-                    // indice 1 contains feature name
-                    // indice 2 contains state abbreviation 
-                    // create dataEntry object in order to use table's find()
-                    dataEntry findEntry = new dataEntry(currCommand[1] + ":" + currCommand[2], (long)-1);
-                
-                    // call what_is helper
-                    dataEntry foundEntry = table.find(findEntry);      
-                
-                    // initialize offset
-                    Long currOffset;  
-                
-                    // iterate through locations
-                    for (int idx = 0; idx < foundEntry.locations.size(); idx++)
+                    else if (field == 8)
                     {
-                        // update offset
-                        currOffset = foundEntry.locations.get(idx);
-                    
-                        // set raf to offset
-                        database.seek(currOffset);
-                        
-                        // the line at given offset
-                        String currentData = database.readLine();
-                    
-                        // add line to pool
-                        pool.insert(currentData);
-                    
-                        // grab and log needed data
-                        String[] lineInformation = currentData.split("\\|");
-                    
-                        // indice 5 contains county name
-                        // indice 8 contains primary long
-                        // indice 7 contains primany lat
-                        // format: offset: county name (long, lat)
-                        log.writeBytes("------------------------------------------------------------------\n" +
-                            "Command " + commandNumber + "\twhat_is\t" + lineInformation[1] + "\t" + lineInformation[3] + "\n");
-                    
-                        log.writeBytes("\t" + currOffset + ": " + lineInformation[5] + " (" +
-                            formatLong(lineInformation[8]) + ", " + formatLat(lineInformation[7]) + ") \n");  
-                    
+                        value = formatLong(value);
                     }
+                    run.out.writeBytes("\t" + fieldLabels[field] + ": " + value + "\n");
                 }
+                run.out.writeBytes("\n");
             }
-            // "WHAT_IS_AT" COMMAND HANDOFF
-            //
-            if (currCommand[0].contains("what_is_at"))
-            {;
-                // call what_is_at helper
-                // 
-                // indice 1 contains raw lat
-                // indice 2 contains raw long
-                what_is_at(currCommand[1], currCommand[2]);
-                
-            }
-            
-            // "WHAT_IS_IN" COMMAND HANDOFF
-            //
-            if (currCommand[0].contains("what_is_in"))
+            // SHORT FORM: offset: name state (long, lat)
+            else
             {
-                // call what_is_in helper
-                
+                run.out.writeBytes("\t" + summary(batch[idx], fields) + "\n");
             }
-        } 
+        }
+        
+        return logged;
     }
     
     /**
-     *  Helper method used to process "world" command from command script
-     *  
-     *  westLong, eastLong, southLat, northLat
-     *  
+     * helper method to execute the behavior of the what_is_near command
+     * 
+     * formats:
+     *      what_is_near  <lat>  <long>  <count>
+     *      what_is_near  <lat>  <long>  <count>  <max radius>
+     *      what_is_near  -filter  <pop|water|structure|feature class>  <lat>  <long>  <count>  [<max radius>]
+     * 
+     * logs the count records closest to the point, nearest first. the quadtree hands out
+     * locations in order of distance and the search ends as soon as count records have been
+     * logged, so only the nodes needed to settle the closest ones are opened. distances and the
+     * max radius are in seconds
+     * 
+     * @param run : the query, its command is the split command line
+     * @return the number of records logged
      * @throws IOException 
      */
-    public static void world(String westLong, String eastLong, String southLat, String northLat) throws IOException
+    private static int what_is_near(queryRun run) throws IOException
     {
-        // convert values in terms of world creation (DMS to seconds)
-        // sum with actual seconds
-        long xMin = convertLong(westLong);
-        long xMax = convertLong(eastLong);
-        long yMin = convertLat(southLat);
-        long yMax = convertLat(northLat);
-                
-        // create new tree with converted values
-        quadtree = new prQuadTree(xMin, xMax, yMin, yMax);
+        String[] command = run.command;
+        
+        // OPTIONAL SWITCH
+        //
+        int arg = 1;
+        String[] filter = null;
+        if (command[arg].equals("-filter"))
+        {
+            filter = featureClasses(command[arg + 1]);
+            arg += 2;
+        }
+        
+        // QUERY POINT
+        //
+        String rawLat = command[arg];
+        String rawLong = command[arg + 1];
+        int wanted = Integer.parseInt(command[arg + 2]);
+        long maxRadius = -1;
+        if (command.length > arg + 3 && !command[arg + 3].isEmpty())
+        {
+            maxRadius = Long.parseLong(command[arg + 3]);
+        }
+        long latitude = convertLat(rawLat);
+        long longitude = convertLong(rawLong);
         
-        // OUTPUT
-        // 
         // header
-        log.writeBytes("------------------------------------------------------------------\n");
-        log.writeBytes("world\t" + westLong + " " + eastLong + " " + southLat + " " + northLat + "\n\n");
-        log.writeBytes("The dimensions of the world are\n");
+        run.out.writeBytes("------------------------------------------------------------------\n");
+        run.out.writeBytes("Command " + run.number + "\t" + String.join("\t", command) + "\n\n");
         
-        // coordinates
-        log.writeBytes("\t\t\t" + yMax + "\n");
-        log.writeBytes("\t\t" + xMin + "\t\t" + xMax + "\n");
-        log.writeBytes("\t\t\t" + yMin + "\n");               
+        // NEAREST SEARCH
+        //
+        // records logged so far, updated by the visitor
+        int[] logged = { 0 };
+        String[] keep = filter;
+        if (wanted > 0)
+        {
+            try
+            {
+                quadtree.forEachNearest(longitude, latitude, maxRadius, currEntry ->
+                {
+                    try
+                    {
+                        logged[0] += logNearest(run, currEntry, longitude, latitude, wanted - logged[0], keep);
+                    }
+                    catch (IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                    
+                    // keep going until enough have been logged
+                    return logged[0] < wanted;
+                });
+            }
+            catch (UncheckedIOException e)
+            {
+                throw e.getCause();
+            }
+        }
+        
+        // trailer
+        run.out.writeBytes("\tFound " + logged[0] + " feature(s) nearest (" + formatLat(rawLat) + ", "
+            + formatLong(rawLong) + ")\n");
+        
+        return logged[0];
     }
     
     /**
-     * Adds parametized GIS file data to our database
+     * logs the records at one what_is_near location, in offset order
      * 
-     * @throws Exception 
+     * @param run : the query being logged
+     * @param currEntry : the location
+     * @param longitude : query point
+     * @param latitude
+     * @param room : most records that may still be logged
+     * @param filter : feature classes to keep; null to keep everything
+     * @return the number of records logged
+     * @throws IOException 
      */
-    public static void importCommand(String appendFileName) throws Exception
+    private static int logNearest(queryRun run, gisEntry currEntry, long longitude, long latitude, int room, String[] filter)
+        throws IOException
     {
-        // header for log file
-        log.writeBytes("------------------------------------------------------------------\n");
-        log.writeBytes("Command " + commandNumber + "\timport " + appendFileName + "\n"); 
-            
-        // create scanner for file so that we may begin to parse and add to our database
-        File appendFile = new File(appendFileName);
-        RandomAccessFile dataFind = new RandomAccessFile(appendFileName, "r");
-        Scanner appendScanner = new Scanner(appendFile);
+        // straight line distance in seconds
+        double distance = Math.hypot(currEntry.getX() - longitude, currEntry.getY() - latitude);
         
-        // scanner for copying line by line to database
-        Scanner readLine = new Scanner(appendFile);
+        // reused for every record at this location
+        fieldTokenizer fields = new fieldTokenizer();
         
-        // apply delimiter
-        appendScanner.useDelimiter("\\|"); 
-        
-        // init offset & array that will be filled with GIS information
-        long offset;
-        String[] currEntry = new String[19];
+        // sequential reads through the database
+        long[] batch = new long[currEntry.getOffsets().size()];
+        int batched = 0;
+        for (PrimitiveIterator.OfLong offsets = currEntry.getOffsets().iterator(); offsets.hasNext(); )
+        {
+            batch[batched++] = offsets.nextLong();
+        }
+        Arrays.sort(batch);
         
-        // iterate scanners
-        appendScanner.nextLine();
-        readLine.nextLine();
-
-        // parse through entire file
-        while (readLine.hasNextLine())
+        int logged = 0;
+        for (long currOffset : batch)
         {
-            // define our current line
-            String newLine = readLine.nextLine();     
-            System.out.println(newLine);
-            
-            // offset for creating our dataEntry
-            Long previousOffset = database.getFilePointer();
-            
-            // append line to database
-            database.writeBytes(newLine + "\n");
-            
-            // HASHTABLE INSERT
-            // 
-            // iterates and fills variables with proper information
-            for (int idx = 0; idx < 19; idx++)
+            if (logged == room)
             {
-                String nextElem = appendScanner.next();
-                
-                // if indice is beginning, do not let it contain "/"
-                if (idx == 0 && nextElem.contains("//"))
-                {
-                    nextElem = appendScanner.next();
-                }
-                
-                currEntry[idx] = nextElem;            
+                break;
             }
             
-            // update offset
-            dataFind.readLine();
-            offset = dataFind.getFilePointer();
-            
-            // create dataEntry object for table
-            dataEntry newTableEntry = new dataEntry(currEntry[1] + ":" + currEntry[3], previousOffset);
-            
-            // insert entry
-            table.insert(newTableEntry);
-            
-            //QUADTREE INSERT
-            // 
-            // value of currEntry[7] is primary latitude
-            // value of currEntry[8] is primary longitude
-            // create a gisEntry to be inserted with the above information & previously found offset
-
-            gisEntry newGisEntry = new gisEntry(convertLat(currEntry[7]), convertLong(currEntry[8]), offset);
-            
-            // insert entry
-            quadtree.insert(newGisEntry);
+            fields.tokenize(store.record(currOffset));
+            if (matchesFilter(fields, filter))
+            {
+                run.out.writeBytes("\t" + summary(currOffset, fields) + " at " + String.format("%.1f", distance) + "s\n");
+                logged++;
+            }
         }
         
-        // close scanner
-        appendScanner.close();       
+        return logged;
     }
     
     /**
-     * helper method to execute the behavior of the what_is_at command
+     * one line description of a record for the region commands
      * 
-     * @param rawLat : raw latitude parameter of command
-     * @param rawLong : raw longitude parameter of command
+     * format: offset: name state (long, lat)
      * 
-     * @throws IOException 
+     * @param offset : database offset of the record
+     * @param fields : the tokenized record
+     * @return the description
      */
-    private static void what_is_at(String rawLat, String rawLong) throws IOException
+    private static String summary(long offset, fieldTokenizer fields)
     {
-        // iterate & check buffer pool for match
-        for (int idx = 0; idx < pool.size(); idx++)
-        {
-            // represents current string being checked
-            String currRecord = pool.get(idx);
-            
-            // if contains both raw datasets
-            if (currRecord.contains(rawLat) && currRecord.contains(rawLong))
-            {
-                // record is in the pool
-                // grab needed information from pool record
-                // offset, feature name, county, state abbreviation
-                
-                // form data array
-                String[] lineInformation = currRecord.split("\\|");
-                
-                // log appropriate data
-                log.writeBytes("whatever is below");
-            }
-        }
+        // built straight from the record bytes
+        StringBuilder sb = new StringBuilder(96);
+        sb.append(offset).append(": ");
         
-        // DATABASE FINDING
-        //       
-        // convert raw coordinates to seconds
-        Long latitude = convertLat(rawLat);
-        Long longitude = convertLong(rawLong);
+        // indice 1 is feature name
+        // indice 3 is state abbreviation
+        fields.appendField(sb, 1).append(' ');
+        fields.appendField(sb, 3).append(" (");
         
-        // set database to beginning
-        database.seek(0);
+        // indice 8 and 7 are the primary long and lat
+        coordinateCodec.appendLongitude(sb, fields.source(), fields.start(8), fields.start(8) + fields.length(8));
+        sb.append(", ");
+        coordinateCodec.appendLatitude(sb, fields.source(), fields.start(7), fields.start(7) + fields.length(7));
+        sb.append(")");
         
-        // create scanner for parsing
-        Scanner databaseScanner = new Scanner(databaseFile);
+        return sb.toString();
+    }
+    
+    /**
+     * checks a record's feature class (indice 2) against a filter
+     * 
+     * @param fields : the tokenized record
+     * @param filter : feature classes to keep; null to keep everything
+     * @return true if the record passes the filter
+     */
+    private static boolean matchesFilter(fieldTokenizer fields, String[] filter)
+    {
+        if (filter == null)
+        {
+            return true;
+        }
         
-        // parse database
-        while (databaseScanner.hasNextLine())
+        for (String featureClass : filter)
         {
-            // current line
-            Long currOffset = database.getFilePointer();
-            String currLine = databaseScanner.nextLine();
-            
-            // if contains coordinates
-            if (currLine.contains(rawLat) && currLine.contains(rawLong))
+            if (fields.fieldEquals(2, featureClass))
             {
-                // add line to pool
-                pool.insert(currLine);
-            
-                // grab and log needed data
-                String[] lineInformation = currLine.split("\\|");
-                
-                // log needed output
-                log.writeBytes("------------------------------------------------------------------\n");
-                log.writeBytes("Command " + commandNumber + "\twhat_is_at\t" + rawLat + "\t" + rawLong + "\n");
-                
-                // indice 1 is feature name
-                // indice 5 is county name
-                // indice 3 is state abbreviation
-                log.writeBytes("\t" + currOffset + "\t" + lineInformation[1] + "\t"
-                    + lineInformation[5] + "\t" + lineInformation[3] + "\n");
+                return true;
             }
-            
-            // update and iterate for accurate offset
-            database.readLine();
         }
+        
+        return false;
     }
     
+    /**
+     * helper method that expands a what_is_in or what_is_near filter into the feature classes
+     * it covers. pop, water and structure name groups of classes, anything else is taken as a
+     * single feature class
+     * 
+     * @param filter : the filter argument
+     * @return the feature classes to keep
+     */
+    private static String[] featureClasses(String filter)
+    {
+        if (filter.equals("pop"))
+        {
+            return new String[] { "Populated Place" };
+        }
+        if (filter.equals("water"))
+        {
+            return new String[] { "Arroyo", "Bay", "Bend", "Canal", "Channel", "Falls", "Glacier", "Gut",
+                "Harbor", "Lake", "Rapids", "Reservoir", "Sea", "Spring", "Stream", "Swamp", "Well" };
+        }
+        if (filter.equals("structure"))
+        {
+            return new String[] { "Airport", "Bridge", "Building", "Church", "Dam", "Hospital", "Levee",
+                "Park", "Post Office", "School", "Tower", "Tunnel" };
+        }
+        
+        return new String[] { filter };
+    }
     
     /**
      * Catch all show method that will write to log file depending on parameterized string
@@ -510,15 +1500,95 @@ public class GIS
             log.writeBytes("\tThe pool is currently size " + pool.size() + "\n\n");
             log.writeBytes("\tMRU\n");
             
-            // iterate through buffer pool array and print contents
-            for (int idx = 0; idx < pool.size(); idx++)
+            // iterate through buffer pool, MRU to LRU, and print contents
+            for (String currRecord : pool)
             {
-                log.writeBytes("\t" + pool.get(idx) + "\n");
+                log.writeBytes("\t" + currRecord + "\n");
             }
             
             // more header information
             log.writeBytes("\tLRU\n");
         }
+        
+        // show buffer pool counters
+        if (type.equals("pool_stats"))
+        {
+            // header information
+            log.writeBytes("------------------------------------------------------------------" + "\n");
+            log.writeBytes("Command " + commandNumber + "\tshow\t" + type + "\n\n"); 
+            log.writeBytes("\tShowing buffer pool counters" + "\n");
+            log.writeBytes("\tPolicy: " + pool.policy().name() + ", capacity " + pool.capacity()
+                + ", size " + pool.size() + "\n");
+            log.writeBytes("\tLookups: " + (pool.hits() + pool.misses()) + ", hits " + pool.hits()
+                + ", misses " + pool.misses() + "\n");
+            log.writeBytes("\tHit rate: " + String.format("%.1f%%", pool.hitRate() * 100) + "\n");
+            log.writeBytes("\tEvictions: " + pool.evictions() + ", rejected by policy " + pool.rejections() + "\n");
+        }
+        
+        // show block cache counters
+        if (type.equals("cache_stats"))
+        {
+            // header information
+            log.writeBytes("------------------------------------------------------------------" + "\n");
+            log.writeBytes("Command " + commandNumber + "\tshow\t" + type + "\n\n"); 
+            log.writeBytes("\tShowing block cache counters" + "\n");
+            
+            blockCache cache = store.cache();
+            if (cache == null)
+            {
+                log.writeBytes("\tThe block cache is off, the database file is memory mapped\n");
+                return;
+            }
+            
+            long lookups = cache.hits() + cache.misses();
+            log.writeBytes("\tBlocks: " + cache.blocks() + " of " + cache.blockSize() + " bytes, "
+                + (cache.isDirect() ? "direct" : "heap") + " memory\n");
+            log.writeBytes("\tLookups: " + lookups + ", hits " + cache.hits() + ", misses " + cache.misses() + "\n");
+            log.writeBytes("\tHit rate: " + String.format("%.1f%%", (lookups == 0) ? 0.0 : cache.hits() * 100.0 / lookups) + "\n");
+            log.writeBytes("\tRead ahead: " + cache.prefetched() + ", evictions " + cache.evictions() + "\n");
+        }
+        
+        // show command latencies and counters
+        if (type.equals("stats"))
+        {
+            // header information
+            log.writeBytes("------------------------------------------------------------------" + "\n");
+            log.writeBytes("Command " + commandNumber + "\tshow\t" + type + "\n\n"); 
+            logStats();
+        }
+    }
+    
+    /**
+     * helper method that writes the command latencies and the counters to the log
+     * 
+     * the current command is not in the latencies yet, it is recorded once it finishes
+     * 
+     * @throws IOException 
+     */
+    private static void logStats() throws IOException
+    {
+        log.writeBytes("\tShowing command latencies (us)" + "\n");
+        log.writeBytes(String.format("\t%-14s %9s %10s %9s %9s %9s %9s\n", "command", "count", "total ms",
+            "p50", "p90", "p99", "max"));
+        for (String command : latencies.keySet())
+        {
+            latencyHistogram histogram = latencies.get(command);
+            log.writeBytes(String.format("\t%-14s %9d %10.1f %9.1f %9.1f %9.1f %9.1f\n", command, histogram.count(),
+                histogram.total() / 1e6, histogram.percentile(50) / 1e3, histogram.percentile(90) / 1e3,
+                histogram.percentile(99) / 1e3, histogram.max() / 1e3));
+        }
+        
+        log.writeBytes("\n\tShowing counters" + "\n");
+        log.writeBytes("\tName index: " + table.lookups() + " lookups, " + table.probes() + " probes\n");
+        log.writeBytes("\tQuadtree: " + ((quadtree == null) ? 0 : quadtree.nodesVisited()) + " nodes visited\n");
+        if (pool != null)
+        {
+            log.writeBytes("\tBuffer pool: " + pool.hits() + " hits, " + pool.misses() + " misses\n");
+        }
+        log.writeBytes("\tDatabase: " + store.recordsRead() + " records, " + store.bytesRead() + " bytes read\n");
+        
+        // includes this report, up to here
+        log.writeBytes("\tLog: " + log.bytesWritten() + " bytes written\n");
     }
     
     /**
@@ -530,9 +1600,9 @@ public class GIS
      * @param currCommand : the current command string being considered
      * @return : array depending on validity of line
      * 
-     * @throws IOException 
+     * @throws Exception 
      */
-    public static String[] validLine(String currCommand) throws IOException
+    public static String[] validLine(String currCommand) throws Exception
     {                             
         // array to be returned
         String[] commEntry;
@@ -556,10 +1626,16 @@ public class GIS
                 String[] quit = new String[1];
                 quit[0] = "quit";
                 
+                // queries still waiting in a batch come first, then the import in progress
+                runBatch();
+                finishImport();
+                saveSnapshot();
+                
                 log.writeBytes("------------------------------------------------------------------");
                 log.writeBytes("\nCommand " + (commandNumber + 1) + "\t quit\n");
                 log.writeBytes("\tFound quit command... ending processing...");
                 
+                // the shutdown hook closes the log, on its own thread
                 System.exit(0);
                 return quit;
             }
@@ -583,58 +1659,10 @@ public class GIS
      * @param rawCoord : raw latitude 
      * @return secondsSum : sum of conversion
      */
-    private static long convertLat(String rawCoord)
+    public static long convertLat(String rawCoord)
     {        
-        // initialize return var
-        long secondsSum = 0;
-        
-        // appends degrees digits and unit    
-        String degree = rawCoord.substring(0, 2);
-
-        if (degree.charAt(0) == '0' && degree.charAt(1) == '0')
-        {
-            degree = degree.substring(2);
-        }       
-        else if (degree.charAt(0) == '0')
-        {
-            // cuts off beginning 0
-            degree = degree.substring(1);
-        }    
-        
-        // convert and add to sum
-        secondsSum += (Long.parseLong(degree) * 3600);
-        
-        // appends minutes and unit
-        String min = rawCoord.substring(2, 4);
-        
-        if (min.charAt(0) == '0')
-        {
-            // cuts off beggining 0
-            min = min.substring(1);
-        }
-        
-        // convert and add to sum
-        secondsSum += (Long.parseLong(min) * 60);
-        
-        // appends seconds and unit
-        String sec = rawCoord.substring(4, 6);
-        if (sec.charAt(0) == '0')
-        {
-            // cuts off beginning 0
-            sec = sec.substring(1);
-        }
-        
-        // add to sum 
-        secondsSum += Long.parseLong(sec);
-        
-        // makes our return value negative if indicating south
-        if (rawCoord.charAt(6) == 'S')
-        {
-            secondsSum *= -1;
-        }
-        
-        // return sum
-        return secondsSum;      
+        // DDMMSSh, negative if south
+        return coordinateCodec.parseLatitude(rawCoord);
     }
     
     /**
@@ -646,56 +1674,8 @@ public class GIS
      */
     public static long convertLong(String rawCoord)
     {
-        // initialize return var
-        long secondsSum = 0;
-        
-        // appends degree digits and unit
-        String degree = rawCoord.substring(0, 3);
-        
-        if (degree.charAt(0) == '0' && degree.charAt(1) == '0')
-        {
-            // cuts off first two 0's
-            degree = degree.substring(2);
-        }    
-        else if (degree.charAt(0) == '0')
-        {
-            //cuts off beggining 0
-            degree = degree.substring(1);
-        }
-        
-        // convert and add to sum
-        secondsSum += (Long.parseLong(degree) * 3600);
-        
-        // appends minutes and unit
-        String min = rawCoord.substring(3, 5);
-        if (min.charAt(0) == '0')
-        {
-            // cuts off beggining 0
-            min = min.substring(1);
-        }
-        // convert and add to sum
-        secondsSum += (Long.parseLong(min) * 60);
-        
-        
-        // appends seconds and unit
-        String sec = rawCoord.substring(5, 7);
-        if (sec.charAt(0) == '0')
-        {
-            // cuts off beginning 0
-            sec = sec.substring(1);
-        }
-        
-        // add to sum 
-        secondsSum += Long.parseLong(sec);
-        
-        // converts sum to negative if longitude indicates west
-        if (rawCoord.charAt(7) == 'W')
-        {
-            secondsSum *= -1;
-        }
-        
-        // return sum
-        return secondsSum;
+        // DDDMMSSh, negative if west
+        return coordinateCodec.parseLongitude(rawCoord);
     }
     
     /**
@@ -708,59 +1688,7 @@ public class GIS
     {        
         // 321643N --> 32d 16m 43s North
         // 320210N --> 32d 2m 10s North
-        
-        // Stringbuilder object to aid with concatenation
-        StringBuilder sb = new StringBuilder();
-        
-        // appends day digits and unit    
-        String day = rawCoord.substring(0, 2);
-
-        if (day.charAt(0) == '0' && day.charAt(1) == '0')
-        {
-            day = day.substring(2);
-        }       
-        else if (day.charAt(0) == '0')
-        {
-            // cuts off beginning 0
-            day = day.substring(1);
-        }    
-        sb.append(day);
-        sb.append("d ");
-        
-        // appends minutes and unit
-        String min = rawCoord.substring(2, 4);
-        
-        if (min.charAt(0) == '0')
-        {
-            // cuts off beggining 0
-            min = min.substring(1);
-        }
-        sb.append(min);
-        sb.append("m ");
-        
-        // appends seconds and unit
-        String sec = rawCoord.substring(4, 6);
-        if (sec.charAt(0) == '0')
-        {
-            // cuts off beginning 0
-            sec = sec.substring(1);
-        }
-        sb.append(sec);
-        sb.append("s");
-        
-        // appends N/S
-        if (rawCoord.charAt(6) == 'N')
-        {
-            sb.append(" North");
-        }
-        else
-        {
-            sb.append(" South");
-        }
-        
-        // return complete string
-        return sb.toString();
-        
+        return coordinateCodec.appendLatitude(new StringBuilder(24), rawCoord).toString();
     }
     
     /**
@@ -773,57 +1701,6 @@ public class GIS
     {
         // 1090224W --> 109d 2m 24s West
         // 1042410W --> 104d 24m 13s West
-        
-        // Stringbuilder object to aid with concatenation
-        StringBuilder sb = new StringBuilder();
-        
-        // appends day digits and unit
-        String day = rawCoord.substring(0, 3);
-        
-        if (day.charAt(0) == '0' && day.charAt(1) == '0')
-        {
-            // cuts off first two 0's
-            day = day.substring(2);
-        }    
-        else if (day.charAt(0) == '0')
-        {
-            //cuts off beggining 0
-            day = day.substring(1);
-        }
-        sb.append(day);
-        sb.append("d ");
-        
-        // appends minutes and unit
-        String min = rawCoord.substring(3, 5);
-        if (min.charAt(0) == '0')
-        {
-            // cuts off beggining 0
-            min = min.substring(1);
-        }
-        sb.append(min);
-        sb.append("m ");
-        
-        // appends seconds and unit
-        String sec = rawCoord.substring(5, 7);
-        if (sec.charAt(0) == '0')
-        {
-            // cuts off beginning 0
-            sec = sec.substring(1);
-        }
-        sb.append(sec);
-        sb.append("s ");
-        
-        // appends W/E
-        if (rawCoord.charAt(7) == 'W')
-        {
-            sb.append("West");
-        }
-        else
-        {
-            sb.append("East");
-        }
-        
-        // return complete string
-        return sb.toString();
+        return coordinateCodec.appendLongitude(new StringBuilder(24), rawCoord).toString();
     }
 }
@@ -0,0 +1,93 @@
+package gis;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * coordinate conversion benchmarks: coordinateCodec against the String based conversions
+ * GIS used before it (legacyCoordinates). each operation handles one latitude and one
+ * longitude
+ *
+ * @author mason gelletly
+ * @version 5.18.22
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class codecBench
+{
+    // coordinates prepared per trial (a power of two)
+    private static final int sampleSize = 1 << 12;
+
+    // DMS latitudes and longitudes, e.g. 383000N and 0793000W
+    private String[] lats;
+    private String[] longs;
+
+    // reused by the codec formatting, as GIS reuses its builder
+    private StringBuilder sb = new StringBuilder();
+
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        gnisData data = new gnisData(sampleSize, "uniform", "uniform", 42);
+        lats = new String[sampleSize];
+        longs = new String[sampleSize];
+        for (int idx = 0; idx < sampleSize; idx++)
+        {
+            lats[idx] = data.dmsLatitude(idx);
+            longs[idx] = data.dmsLongitude(idx);
+        }
+    }
+
+    @Benchmark
+    public long convertLegacy()
+    {
+        int idx = next++ & (sampleSize - 1);
+
+        return legacyCoordinates.convertLat(lats[idx]) + legacyCoordinates.convertLong(longs[idx]);
+    }
+
+    @Benchmark
+    public long convertCodec()
+    {
+        int idx = next++ & (sampleSize - 1);
+
+        return coordinateCodec.parseLatitude(lats[idx]) + coordinateCodec.parseLongitude(longs[idx]);
+    }
+
+    @Benchmark
+    public void formatLegacy(Blackhole sink)
+    {
+        int idx = next++ & (sampleSize - 1);
+
+        sink.consume(legacyCoordinates.formatLat(lats[idx]));
+        sink.consume(legacyCoordinates.formatLong(longs[idx]));
+    }
+
+    @Benchmark
+    public StringBuilder formatCodec()
+    {
+        int idx = next++ & (sampleSize - 1);
+
+        sb.setLength(0);
+        coordinateCodec.appendLatitude(sb, lats[idx]);
+        return coordinateCodec.appendLongitude(sb, longs[idx]);
+    }
+}
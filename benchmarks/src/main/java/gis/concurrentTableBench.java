@@ -0,0 +1,116 @@
+package gis;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * multi-threaded name index benchmarks: many threads indexing names into one shared table,
+ * the way parallel import workers would, and looking names up in it
+ *
+ * compares the lock-striped concurrentTable against the probeTable GIS uses behind a single
+ * lock. run it at several thread counts to see how each scales, e.g.
+ *
+ *      java -jar benchmarks.jar concurrentTableBench -t 1
+ *      java -jar benchmarks.jar concurrentTableBench -t 16
+ *
+ * every thread works through its own share of the data set (thread i takes records i,
+ * i + threads, ...), so with zipf names the threads keep merging into the same popular entries
+ *
+ * @author mason gelletly
+ * @version 5.22.22
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class concurrentTableBench
+{
+    @Param({ "1000000" })
+    public int size;
+
+    @Param({ "uniform", "zipf" })
+    public String skew;
+
+    @Param({ "striped", "locked" })
+    public String table;
+
+    // the data set, as GIS would index it
+    private String[] keys;
+
+    // shared table, rebuilt every iteration
+    private concurrentTable<dataEntry> striped;
+    private probeTable<dataEntry> locked;
+    private boolean striping;
+
+    /**
+     * one benchmark thread's position in the data set
+     */
+    @State(Scope.Thread)
+    public static class cursor
+    {
+        int next;
+        int stride;
+
+        @Setup(Level.Iteration)
+        public void setUp(ThreadParams threads)
+        {
+            next = threads.getThreadIndex();
+            stride = threads.getThreadCount();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        striping = table.equals("striped");
+        gnisData data = new gnisData(size, skew, "uniform", 42);
+        keys = new String[size];
+        for (int idx = 0; idx < size; idx++)
+        {
+            keys[idx] = data.key(idx);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyTable()
+    {
+        striped = new concurrentTable<dataEntry>(256, 0.75, null);
+        locked = new probeTable<dataEntry>(256, 0.7);
+    }
+
+    /**
+     * one name indexed: inserted, or its offset merged into the entry holding the name
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public dataEntry insert(cursor at)
+    {
+        int idx = at.next % size;
+        at.next += at.stride;
+        long offset = idx;
+
+        if (striping)
+        {
+            return striped.merge(new dataEntry(keys[idx], offset), (stored, added) -> stored.withLocation(offset));
+        }
+
+        synchronized (locked)
+        {
+            return locked.merge(new dataEntry(keys[idx], offset), (stored, added) -> stored.withLocation(offset));
+        }
+    }
+}
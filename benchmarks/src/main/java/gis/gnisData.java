@@ -0,0 +1,419 @@
+package gis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * synthetic GNIS-shaped data, so benchmarks (and anything else that needs GIS records at
+ * scale) run without the real extracts
+ *
+ * a data set is count features, each with a name, a state, a feature class and a primary
+ * coordinate. the same seed always gives the same data
+ *
+ * key skew: names are drawn from a vocabulary of about count / 4 names, either uniformly or
+ * zipfian (s = 1), where a handful of names ("Mill Stream", "Bear Stream") make up
+ * a large share of the features, as they do in the real files
+ *
+ * spatial layout: coordinates are spread uniformly over the continental US, or clustered
+ * as gaussian blobs around a few hundred "towns". coordinates are whole seconds, and as in
+ * the real files two features may lie one second apart or on the very same second
+ *
+ * record() renders a feature as a full 20 field pipe-delimited record with valid DMS and
+ * decimal degree columns
+ *
+ * @author mason gelletly
+ * @version 5.18.22
+ */
+public class gnisData
+{
+    // the continental US, in seconds
+    public static final long xMin = -125 * 3600L;
+    public static final long xMax = -67 * 3600L;
+    public static final long yMin = 25 * 3600L;
+    public static final long yMax = 49 * 3600L;
+
+    // column header of a GIS file
+    public static final String header = "FEATURE_ID|FEATURE_NAME|FEATURE_CLASS|STATE_ALPHA|STATE_NUMERIC|"
+        + "COUNTY_NAME|COUNTY_NUMERIC|PRIMARY_LAT_DMS|PRIM_LONG_DMS|PRIM_LAT_DEC|PRIM_LONG_DEC|"
+        + "SOURCE_LAT_DMS|SOURCE_LONG_DMS|SOURCE_LAT_DEC|SOURCE_LONG_DEC|ELEV_IN_M|ELEV_IN_FT|"
+        + "MAP_NAME|DATE_CREATED|DATE_EDITED";
+
+    // name parts
+    private static final String[] firstWords = { "Mill", "Bear", "Spring", "Cedar", "Oak", "Pine", "Walnut",
+        "Mud", "Rock", "Sandy", "Clear", "Big", "Little", "Indian", "Beaver", "Turkey", "Mount Zion", "Bethel",
+        "Pleasant", "Union", "Fairview", "Hickory", "Laurel", "Elk", "Buffalo", "Silver", "Otter", "Willow" };
+    private static final String[] classes = { "Stream", "Church", "School", "Populated Place", "Lake", "Summit",
+        "Valley", "Building", "Cemetery", "Reservoir", "Locale", "Spring", "Dam", "Bridge", "Park", "Post Office" };
+    private static final String[] states = { "VA", "NC", "TX", "CA", "PA", "OH", "NY", "KY", "TN", "WV", "GA",
+        "MO", "CO", "OR", "WA", "MT" };
+    private static final String[] counties = { "Montgomery", "Franklin", "Washington", "Jefferson", "Lincoln",
+        "Madison", "Jackson", "Clay", "Marion", "Greene" };
+
+    // towns per clustered data set, and the spread of a town (about 20 km)
+    private static final int towns = 256;
+    private static final double townSpread = 600;
+
+    // FEATURES
+    private int count;
+    private String[] vocabulary; // distinct names
+    private int[] nameOf; // vocabulary index of each feature
+    private byte[] stateOf; // states index of each feature
+    private byte[] classOf; // classes index of each feature
+    private long[] lats; // seconds
+    private long[] longs; // seconds
+
+    // skew of the names, for sampling lookups that follow the same distribution
+    private boolean zipf;
+    private double[] zipfTable;
+    private int[] firstOf; // first feature with each name, built on first use
+
+    /**
+     * generates a data set
+     *
+     * @param count : number of features
+     * @param skew : "uniform" or "zipf" name repetition
+     * @param layout : "uniform" or "clustered" coordinates
+     * @param seed : random seed
+     */
+    public gnisData(int count, String skew, String layout, long seed)
+    {
+        if (!skew.equals("uniform") && !skew.equals("zipf"))
+        {
+            throw new IllegalArgumentException("unknown key skew " + skew);
+        }
+        if (!layout.equals("uniform") && !layout.equals("clustered"))
+        {
+            throw new IllegalArgumentException("unknown spatial layout " + layout);
+        }
+
+        this.count = count;
+        this.zipf = skew.equals("zipf");
+        Random random = new Random(seed);
+
+        // VOCABULARY
+        vocabulary = new String[Math.max(1, count / 4)];
+        for (int idx = 0; idx < vocabulary.length; idx++)
+        {
+            // the most common names are the plain ones
+            String first = firstWords[idx % firstWords.length];
+            String kind = classes[(idx / firstWords.length) % classes.length];
+            int suffix = idx / (firstWords.length * classes.length);
+            vocabulary[idx] = (suffix == 0) ? first + " " + kind : first + " " + kind + " " + suffix;
+        }
+        if (zipf)
+        {
+            zipfTable = zipfTable(vocabulary.length);
+        }
+
+        // CLUSTER CENTRES
+        long[] townX = new long[towns];
+        long[] townY = new long[towns];
+        for (int idx = 0; idx < towns; idx++)
+        {
+            townX[idx] = xMin + (long)(random.nextDouble() * (xMax - xMin));
+            townY[idx] = yMin + (long)(random.nextDouble() * (yMax - yMin));
+        }
+
+        // FEATURES
+        nameOf = new int[count];
+        stateOf = new byte[count];
+        classOf = new byte[count];
+        lats = new long[count];
+        longs = new long[count];
+        for (int idx = 0; idx < count; idx++)
+        {
+            nameOf[idx] = nextName(random);
+            stateOf[idx] = (byte)random.nextInt(states.length);
+            classOf[idx] = (byte)((nameOf[idx] / firstWords.length) % classes.length);
+
+            long x;
+            long y;
+            if (layout.equals("clustered"))
+            {
+                int town = random.nextInt(towns);
+                x = townX[town] + (long)(random.nextGaussian() * townSpread);
+                y = townY[town] + (long)(random.nextGaussian() * townSpread);
+            }
+            else
+            {
+                x = xMin + (long)(random.nextDouble() * (xMax - xMin));
+                y = yMin + (long)(random.nextDouble() * (yMax - yMin));
+            }
+
+            // clamp to the world
+            longs[idx] = Math.max(xMin, Math.min(xMax, x));
+            lats[idx] = Math.max(yMin, Math.min(yMax, y));
+        }
+    }
+
+    /**
+     * cumulative zipf (s = 1) distribution over n ranks
+     */
+    private static double[] zipfTable(int n)
+    {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int idx = 0; idx < n; idx++)
+        {
+            sum += 1.0 / (idx + 1);
+            cumulative[idx] = sum;
+        }
+        for (int idx = 0; idx < n; idx++)
+        {
+            cumulative[idx] /= sum;
+        }
+
+        return cumulative;
+    }
+
+    /**
+     * draws a vocabulary index following the data set's key skew
+     *
+     * @param random : source of randomness
+     * @return the vocabulary index
+     */
+    public int nextName(Random random)
+    {
+        if (!zipf)
+        {
+            return random.nextInt(vocabulary.length);
+        }
+
+        // binary search of the cumulative distribution
+        double target = random.nextDouble();
+        int lo = 0;
+        int hi = zipfTable.length - 1;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (zipfTable[mid] < target)
+            {
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    /**
+     * draws a feature that follows the data set's key skew, e.g. for lookups: popular names
+     * are looked up more often
+     *
+     * @param random : source of randomness
+     * @return a feature index
+     */
+    public int nextFeature(Random random)
+    {
+        if (!zipf)
+        {
+            return random.nextInt(count);
+        }
+
+        // the first feature carrying the drawn name
+        if (firstOf == null)
+        {
+            firstOf = new int[vocabulary.length];
+            Arrays.fill(firstOf, -1);
+            for (int idx = count - 1; idx >= 0; idx--)
+            {
+                firstOf[nameOf[idx]] = idx;
+            }
+        }
+
+        int feature = firstOf[nextName(random)];
+        return (feature >= 0) ? feature : random.nextInt(count);
+    }
+
+    /**
+     * simple getter for the number of features
+     *
+     * @return the size of the data set
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * feature name
+     *
+     * @param feature : feature index
+     * @return the name
+     */
+    public String name(int feature)
+    {
+        return vocabulary[nameOf[feature]];
+    }
+
+    /**
+     * state abbreviation
+     *
+     * @param feature : feature index
+     * @return the state
+     */
+    public String state(int feature)
+    {
+        return states[stateOf[feature]];
+    }
+
+    /**
+     * name index key, as GIS builds it (name:state)
+     *
+     * @param feature : feature index
+     * @return the key
+     */
+    public String key(int feature)
+    {
+        return name(feature) + ":" + state(feature);
+    }
+
+    /**
+     * latitude in seconds
+     *
+     * @param feature : feature index
+     * @return the latitude
+     */
+    public long latitude(int feature)
+    {
+        return lats[feature];
+    }
+
+    /**
+     * longitude in seconds
+     *
+     * @param feature : feature index
+     * @return the longitude
+     */
+    public long longitude(int feature)
+    {
+        return longs[feature];
+    }
+
+    /**
+     * renders a feature as a full GIS record, without a line terminator
+     *
+     * @param feature : feature index
+     * @return the record
+     */
+    public String record(int feature)
+    {
+        StringBuilder sb = new StringBuilder(192);
+        long lat = lats[feature];
+        long lon = longs[feature];
+        int elevation = (int)((feature * 37L) % 3000);
+
+        sb.append(feature + 1).append('|');
+        sb.append(name(feature)).append('|');
+        sb.append(classes[classOf[feature]]).append('|');
+        sb.append(state(feature)).append('|');
+        sb.append(10 + stateOf[feature]).append('|');
+        sb.append(counties[feature % counties.length]).append('|');
+        appendPadded(sb, 1 + (feature % 199), 3).append('|');
+        appendDms(sb, lat, 2, 'N', 'S').append('|');
+        appendDms(sb, lon, 3, 'E', 'W').append('|');
+        appendDecimal(sb, lat).append('|');
+        appendDecimal(sb, lon).append('|');
+
+        // source coordinates only on streams, as in the real files
+        if (classOf[feature] == 0)
+        {
+            appendDms(sb, lat + 120, 2, 'N', 'S').append('|');
+            appendDms(sb, lon - 120, 3, 'E', 'W').append('|');
+            appendDecimal(sb, lat + 120).append('|');
+            appendDecimal(sb, lon - 120).append('|');
+        }
+        else
+        {
+            sb.append("||||");
+        }
+
+        sb.append(elevation).append('|');
+        sb.append(Math.round(elevation * 3.28084)).append('|');
+        sb.append(counties[(feature / 7) % counties.length]).append('|');
+        sb.append("09/28/1979|");
+        sb.append("04/02/2010");
+
+        return sb.toString();
+    }
+
+    /**
+     * renders a feature as a record in the database encoding (one byte per char)
+     *
+     * @param feature : feature index
+     * @return the record bytes
+     */
+    public byte[] encodedRecord(int feature)
+    {
+        return record(feature).getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * DMS latitude of a feature, e.g. 383000N
+     *
+     * @param feature : feature index
+     * @return the DMS text
+     */
+    public String dmsLatitude(int feature)
+    {
+        return appendDms(new StringBuilder(), lats[feature], 2, 'N', 'S').toString();
+    }
+
+    /**
+     * DMS longitude of a feature, e.g. 0793000W
+     *
+     * @param feature : feature index
+     * @return the DMS text
+     */
+    public String dmsLongitude(int feature)
+    {
+        return appendDms(new StringBuilder(), longs[feature], 3, 'E', 'W').toString();
+    }
+
+    /**
+     * appends seconds as fixed width DMS
+     */
+    private static StringBuilder appendDms(StringBuilder sb, long seconds, int degreeDigits, char positive, char negative)
+    {
+        long abs = Math.abs(seconds);
+        appendPadded(sb, abs / 3600, degreeDigits);
+        appendPadded(sb, (abs / 60) % 60, 2);
+        appendPadded(sb, abs % 60, 2);
+
+        return sb.append(seconds < 0 ? negative : positive);
+    }
+
+    /**
+     * appends seconds as decimal degrees with 7 places
+     */
+    private static StringBuilder appendDecimal(StringBuilder sb, long seconds)
+    {
+        long abs = Math.abs(seconds);
+        long tenMillionths = Math.round(abs * 1e7 / 3600);
+        if (seconds < 0)
+        {
+            sb.append('-');
+        }
+        sb.append(tenMillionths / 10_000_000).append('.');
+
+        return appendPadded(sb, tenMillionths % 10_000_000, 7);
+    }
+
+    /**
+     * appends a number zero padded to a width
+     */
+    private static StringBuilder appendPadded(StringBuilder sb, long value, int width)
+    {
+        String digits = Long.toString(value);
+        for (int idx = digits.length(); idx < width; idx++)
+        {
+            sb.append('0');
+        }
+
+        return sb.append(digits);
+    }
+}
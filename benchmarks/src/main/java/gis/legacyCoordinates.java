@@ -0,0 +1,262 @@
+package gis;
+
+/**
+ * the String based coordinate conversions GIS used before coordinateCodec, kept verbatim as
+ * the baseline the codec benchmarks are compared against
+ *
+ * @author mason gelletly
+ * @version 5.18.22
+ */
+public class legacyCoordinates
+{
+    /**
+     * helper method that accepts full raw latitude and returns the value
+     * converted fully to seconds
+     * 
+     * @param rawCoord : raw latitude 
+     * @return secondsSum : sum of conversion
+     */
+    public static long convertLat(String rawCoord)
+    {        
+        // initialize return var
+        long secondsSum = 0;
+        
+        // appends degrees digits and unit    
+        String degree = rawCoord.substring(0, 2);
+
+        if (degree.charAt(0) == '0' && degree.charAt(1) == '0')
+        {
+            degree = degree.substring(2);
+        }       
+        else if (degree.charAt(0) == '0')
+        {
+            // cuts off beginning 0
+            degree = degree.substring(1);
+        }    
+        
+        // convert and add to sum
+        secondsSum += (Long.parseLong(degree) * 3600);
+        
+        // appends minutes and unit
+        String min = rawCoord.substring(2, 4);
+        
+        if (min.charAt(0) == '0')
+        {
+            // cuts off beggining 0
+            min = min.substring(1);
+        }
+        
+        // convert and add to sum
+        secondsSum += (Long.parseLong(min) * 60);
+        
+        // appends seconds and unit
+        String sec = rawCoord.substring(4, 6);
+        if (sec.charAt(0) == '0')
+        {
+            // cuts off beginning 0
+            sec = sec.substring(1);
+        }
+        
+        // add to sum 
+        secondsSum += Long.parseLong(sec);
+        
+        // makes our return value negative if indicating south
+        if (rawCoord.charAt(6) == 'S')
+        {
+            secondsSum *= -1;
+        }
+        
+        // return sum
+        return secondsSum;      
+    }
+    
+    /**
+     * helper method that accepts full raw longitude and returns the value
+     * converted fully to seconds
+     * 
+     * @param rawCoord : raw longitude 
+     * @return secondsSum : sum of conversion
+     */
+    public static long convertLong(String rawCoord)
+    {
+        // initialize return var
+        long secondsSum = 0;
+        
+        // appends degree digits and unit
+        String degree = rawCoord.substring(0, 3);
+        
+        if (degree.charAt(0) == '0' && degree.charAt(1) == '0')
+        {
+            // cuts off first two 0's
+            degree = degree.substring(2);
+        }    
+        else if (degree.charAt(0) == '0')
+        {
+            //cuts off beggining 0
+            degree = degree.substring(1);
+        }
+        
+        // convert and add to sum
+        secondsSum += (Long.parseLong(degree) * 3600);
+        
+        // appends minutes and unit
+        String min = rawCoord.substring(3, 5);
+        if (min.charAt(0) == '0')
+        {
+            // cuts off beggining 0
+            min = min.substring(1);
+        }
+        // convert and add to sum
+        secondsSum += (Long.parseLong(min) * 60);
+        
+        
+        // appends seconds and unit
+        String sec = rawCoord.substring(5, 7);
+        if (sec.charAt(0) == '0')
+        {
+            // cuts off beginning 0
+            sec = sec.substring(1);
+        }
+        
+        // add to sum 
+        secondsSum += Long.parseLong(sec);
+        
+        // converts sum to negative if longitude indicates west
+        if (rawCoord.charAt(7) == 'W')
+        {
+            secondsSum *= -1;
+        }
+        
+        // return sum
+        return secondsSum;
+    }
+    
+    /**
+     * helper method to reformat coordinates
+     * 
+     * @param rawCoord
+     * @return retString
+     */
+    public static String formatLat(String rawCoord)
+    {        
+        // 321643N --> 32d 16m 43s North
+        // 320210N --> 32d 2m 10s North
+        
+        // Stringbuilder object to aid with concatenation
+        StringBuilder sb = new StringBuilder();
+        
+        // appends day digits and unit    
+        String day = rawCoord.substring(0, 2);
+
+        if (day.charAt(0) == '0' && day.charAt(1) == '0')
+        {
+            day = day.substring(2);
+        }       
+        else if (day.charAt(0) == '0')
+        {
+            // cuts off beginning 0
+            day = day.substring(1);
+        }    
+        sb.append(day);
+        sb.append("d ");
+        
+        // appends minutes and unit
+        String min = rawCoord.substring(2, 4);
+        
+        if (min.charAt(0) == '0')
+        {
+            // cuts off beggining 0
+            min = min.substring(1);
+        }
+        sb.append(min);
+        sb.append("m ");
+        
+        // appends seconds and unit
+        String sec = rawCoord.substring(4, 6);
+        if (sec.charAt(0) == '0')
+        {
+            // cuts off beginning 0
+            sec = sec.substring(1);
+        }
+        sb.append(sec);
+        sb.append("s");
+        
+        // appends N/S
+        if (rawCoord.charAt(6) == 'N')
+        {
+            sb.append(" North");
+        }
+        else
+        {
+            sb.append(" South");
+        }
+        
+        // return complete string
+        return sb.toString();
+        
+    }
+    
+    /**
+     * helper method to reformat coordinates
+     * 
+     * @param rawCoord
+     * @return retString
+     */
+    public static String formatLong(String rawCoord)
+    {
+        // 1090224W --> 109d 2m 24s West
+        // 1042410W --> 104d 24m 13s West
+        
+        // Stringbuilder object to aid with concatenation
+        StringBuilder sb = new StringBuilder();
+        
+        // appends day digits and unit
+        String day = rawCoord.substring(0, 3);
+        
+        if (day.charAt(0) == '0' && day.charAt(1) == '0')
+        {
+            // cuts off first two 0's
+            day = day.substring(2);
+        }    
+        else if (day.charAt(0) == '0')
+        {
+            //cuts off beggining 0
+            day = day.substring(1);
+        }
+        sb.append(day);
+        sb.append("d ");
+        
+        // appends minutes and unit
+        String min = rawCoord.substring(3, 5);
+        if (min.charAt(0) == '0')
+        {
+            // cuts off beggining 0
+            min = min.substring(1);
+        }
+        sb.append(min);
+        sb.append("m ");
+        
+        // appends seconds and unit
+        String sec = rawCoord.substring(5, 7);
+        if (sec.charAt(0) == '0')
+        {
+            // cuts off beginning 0
+            sec = sec.substring(1);
+        }
+        sb.append(sec);
+        sb.append("s ");
+        
+        // appends W/E
+        if (rawCoord.charAt(7) == 'W')
+        {
+            sb.append("West");
+        }
+        else
+        {
+            sb.append("East");
+        }
+        
+        // return complete string
+        return sb.toString();
+    }
+}
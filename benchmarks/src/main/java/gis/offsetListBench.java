@@ -0,0 +1,191 @@
+package gis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * offset list benchmarks: building the offsets of one name, walking them the way what_is
+ * does, and the duplicate check. covers the offsetList dataEntry and gisEntry use (plain up
+ * to 17 offsets, compressed past that), the ArrayList<Long> they used to hold, and a bare
+ * long[] as the floor
+ *
+ * offsets are 100 to 300 bytes apart, as records of a popular name spread through an import
+ *
+ * @author mason gelletly
+ * @version 5.25.22
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class offsetListBench
+{
+    // lookups prepared per trial (a power of two)
+    private static final int probeCount = 1 << 12;
+
+    @Param({ "1", "16", "1000", "20000" })
+    public int count;
+
+    @Param({ "offsetList", "boxed", "array" })
+    public String list;
+
+    // the offsets, in increasing order
+    private long[] offsets;
+
+    // built lists
+    private offsetList packed;
+    private ArrayList<Long> boxed;
+
+    // contains() lookups, half of them present
+    private long[] probes;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Random random = new Random(42);
+        offsets = new long[count];
+        long offset = random.nextInt(1 << 20);
+        for (int idx = 0; idx < count; idx++)
+        {
+            offsets[idx] = offset;
+            offset += 100 + random.nextInt(200);
+        }
+
+        packed = buildPacked();
+        boxed = buildBoxed();
+
+        probes = new long[probeCount];
+        for (int idx = 0; idx < probeCount; idx++)
+        {
+            long hit = offsets[random.nextInt(count)];
+            probes[idx] = random.nextBoolean() ? hit : hit + 1;
+        }
+    }
+
+    private offsetList buildPacked()
+    {
+        offsetList built = new offsetList(offsets[0]);
+        for (int idx = 1; idx < count; idx++)
+        {
+            built.add(offsets[idx]);
+        }
+
+        return built;
+    }
+
+    private ArrayList<Long> buildBoxed()
+    {
+        // the old addLocation(): a contains() check before every add
+        ArrayList<Long> built = new ArrayList<Long>();
+        for (int idx = 0; idx < count; idx++)
+        {
+            if (!built.contains(offsets[idx]))
+            {
+                built.add(offsets[idx]);
+            }
+        }
+
+        return built;
+    }
+
+    /**
+     * every offset of a name added in file order, with the duplicate check
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object build()
+    {
+        if (list.equals("offsetList"))
+        {
+            return buildPacked();
+        }
+        if (list.equals("boxed"))
+        {
+            return buildBoxed();
+        }
+
+        long[] built = new long[1];
+        for (int idx = 0; idx < count; idx++)
+        {
+            if (idx == built.length)
+            {
+                built = Arrays.copyOf(built, built.length * 2);
+            }
+            built[idx] = offsets[idx];
+        }
+        return built;
+    }
+
+    /**
+     * what_is: every offset of a name, in order
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long iterate()
+    {
+        long sum = 0;
+        if (list.equals("offsetList"))
+        {
+            for (PrimitiveIterator.OfLong curr = packed.iterator(); curr.hasNext(); )
+            {
+                sum += curr.nextLong();
+            }
+        }
+        else if (list.equals("boxed"))
+        {
+            for (Long curr : boxed)
+            {
+                sum += curr;
+            }
+        }
+        else
+        {
+            for (long curr : offsets)
+            {
+                sum += curr;
+            }
+        }
+
+        return sum;
+    }
+
+    /**
+     * one duplicate check against the whole list
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean contains()
+    {
+        long probe = probes[next++ & (probeCount - 1)];
+        if (list.equals("offsetList"))
+        {
+            return packed.contains(probe);
+        }
+        if (list.equals("boxed"))
+        {
+            return boxed.contains(probe);
+        }
+
+        return Arrays.binarySearch(offsets, probe) >= 0;
+    }
+}
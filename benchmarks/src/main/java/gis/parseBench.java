@@ -0,0 +1,102 @@
+package gis;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * record parsing benchmarks: pulling the name index key and the primary coordinate out of
+ * one GIS record, what an import does for every line
+ *
+ * tokenize is the import parser's path (fieldTokenizer and coordinateCodec over the encoded
+ * bytes); split is the String path GIS used before it (decode, split on '|', convert with
+ * legacyCoordinates)
+ *
+ * @author mason gelletly
+ * @version 5.18.22
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class parseBench
+{
+    // records prepared per trial (a power of two)
+    private static final int sampleSize = 1 << 14;
+
+    // GIS record fields used by the indexes
+    private static final int nameField = 1;
+    private static final int stateField = 3;
+    private static final int latField = 7;
+    private static final int longField = 8;
+
+    // every sample record back to back in the database encoding, and where each one starts
+    private ByteBuffer records;
+    private int[] starts;
+
+    private fieldTokenizer fields = new fieldTokenizer();
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        gnisData data = new gnisData(sampleSize, "zipf", "clustered", 42);
+        byte[][] encoded = new byte[sampleSize][];
+        int total = 0;
+        for (int idx = 0; idx < sampleSize; idx++)
+        {
+            encoded[idx] = data.encodedRecord(idx);
+            total += encoded[idx].length;
+        }
+
+        records = ByteBuffer.allocate(total);
+        starts = new int[sampleSize + 1];
+        for (int idx = 0; idx < sampleSize; idx++)
+        {
+            starts[idx] = records.position();
+            records.put(encoded[idx]);
+        }
+        starts[sampleSize] = records.position();
+    }
+
+    @Benchmark
+    public void tokenize(Blackhole sink)
+    {
+        int idx = next++ & (sampleSize - 1);
+        fields.tokenize(records, starts[idx], starts[idx + 1]);
+
+        sink.consume(fields.field(nameField) + ":" + fields.field(stateField));
+        sink.consume(coordinateCodec.parseLatitude(records, fields.start(latField),
+            fields.start(latField) + fields.length(latField)));
+        sink.consume(coordinateCodec.parseLongitude(records, fields.start(longField),
+            fields.start(longField) + fields.length(longField)));
+    }
+
+    @Benchmark
+    public void split(Blackhole sink)
+    {
+        int idx = next++ & (sampleSize - 1);
+        String line = new String(records.array(), starts[idx], starts[idx + 1] - starts[idx],
+            StandardCharsets.ISO_8859_1);
+        String[] entry = line.split("\\|");
+
+        sink.consume(entry[nameField] + ":" + entry[stateField]);
+        sink.consume(legacyCoordinates.convertLat(entry[latField]));
+        sink.consume(legacyCoordinates.convertLong(entry[longField]));
+    }
+}
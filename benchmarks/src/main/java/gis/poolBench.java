@@ -0,0 +1,97 @@
+package gis;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * buffer pool benchmarks: the find-then-insert-on-miss step GIS runs for every record it
+ * logs, replayed from a trace of database offsets
+ *
+ * the trace draws records from a database of size records, following the key skew: with
+ * zipf a few records are asked for over and over, which is what a pool is for. the hit rate
+ * of each run is not part of the score, show pool_stats (or the pool's counters) gives it
+ *
+ * @author mason gelletly
+ * @version 5.18.22
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class poolBench
+{
+    // trace length (a power of two)
+    private static final int traceLength = 1 << 20;
+
+    @Param({ "10000", "1000000", "10000000" })
+    public int size;
+
+    @Param({ "uniform", "zipf" })
+    public String skew;
+
+    @Param({ "15", "1024", "65536" })
+    public int capacity;
+
+    @Param({ "lru", "2q", "tinylfu" })
+    public String policy;
+
+    // offsets to look up, and the record a miss pulls in
+    private long[] trace;
+    private String record;
+
+    private bufferPool pool;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        gnisData data = new gnisData(size, skew, "uniform", 42);
+        record = data.record(0);
+
+        // offsets of ~150 byte records
+        Random random = new Random(7);
+        trace = new long[traceLength];
+        for (int idx = 0; idx < traceLength; idx++)
+        {
+            trace[idx] = data.nextFeature(random) * 150L;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyPool()
+    {
+        pool = new bufferPool(capacity, poolPolicy.forName(policy, capacity));
+    }
+
+    /**
+     * one record fetch: a pool lookup, and an insert if it missed
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String access()
+    {
+        Long offset = trace[next++ & (traceLength - 1)];
+        String found = pool.find(offset);
+        if (found == null)
+        {
+            pool.insert(offset, record);
+            found = record;
+        }
+
+        return found;
+    }
+}
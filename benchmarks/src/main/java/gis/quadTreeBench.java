@@ -0,0 +1,154 @@
+package gis;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * coordinate index benchmarks: building a prQuadTree one insert at a time and in bulk, and
+ * the three query shapes GIS runs against it (a point, a region, the k nearest)
+ *
+ * the tree is built as GIS builds it, bucket size 1 over the continental US. point lookups
+ * hit existing features; regions are 0.1 degree squares and nearest lookups ask for 10
+ * features, both centred on existing features, so clustered data gives dense answers
+ *
+ * @author mason gelletly
+ * @version 5.18.22
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class quadTreeBench
+{
+    // lookups prepared per trial (a power of two)
+    private static final int probeCount = 1 << 14;
+
+    // half the side of a region query, 0.05 degrees
+    private static final long regionHalf = 180;
+
+    @Param({ "10000", "100000", "1000000", "10000000" })
+    public int size;
+
+    @Param({ "uniform", "clustered" })
+    public String layout;
+
+    // the data set and the built tree
+    private gnisData data;
+    private prQuadTree<gisEntry> tree;
+
+    // lookups
+    private gisEntry[] probes;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        data = new gnisData(size, "uniform", layout, 42);
+        tree = bulkLoad();
+
+        Random random = new Random(7);
+        probes = new gisEntry[probeCount];
+        for (int idx = 0; idx < probeCount; idx++)
+        {
+            int feature = random.nextInt(size);
+            probes[idx] = new gisEntry(data.latitude(feature), data.longitude(feature), -1);
+        }
+    }
+
+    /**
+     * an empty tree over the data set's world
+     */
+    private static prQuadTree<gisEntry> emptyTree()
+    {
+        return new prQuadTree<gisEntry>(gnisData.xMin, gnisData.xMax, gnisData.yMin, gnisData.yMax);
+    }
+
+    /**
+     * inserts every feature into an empty tree, in data set order
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object insert() throws Exception
+    {
+        prQuadTree<gisEntry> built = emptyTree();
+        for (int idx = 0; idx < size; idx++)
+        {
+            built.insert(new gisEntry(data.latitude(idx), data.longitude(idx), idx));
+        }
+
+        return built;
+    }
+
+    /**
+     * builds the same tree with bulkLoad(), the way an import into an empty world does
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public prQuadTree<gisEntry> bulkLoad() throws Exception
+    {
+        ArrayList<gisEntry> entries = new ArrayList<gisEntry>(size);
+        for (int idx = 0; idx < size; idx++)
+        {
+            entries.add(new gisEntry(data.latitude(idx), data.longitude(idx), idx));
+        }
+
+        prQuadTree<gisEntry> built = emptyTree();
+        built.bulkLoad(entries);
+
+        return built;
+    }
+
+    /**
+     * what_is_at: one point lookup
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public gisEntry findPoint()
+    {
+        return tree.find(probes[next++ & (probeCount - 1)]);
+    }
+
+    /**
+     * what_is_in: every feature in a 0.1 degree square
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int findRegion()
+    {
+        gisEntry centre = probes[next++ & (probeCount - 1)];
+
+        return tree.find(centre.getX() - regionHalf, centre.getX() + regionHalf,
+            centre.getY() - regionHalf, centre.getY() + regionHalf).size();
+    }
+
+    /**
+     * what_is_near: the 10 nearest features, no radius
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int findNearest()
+    {
+        gisEntry centre = probes[next++ & (probeCount - 1)];
+
+        return tree.findNearest(centre.getX(), centre.getY(), 10, -1).size();
+    }
+}
@@ -0,0 +1,275 @@
+package gis;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * runs GIS end to end on a command script, in a fresh JVM per run, and reports how long
+ * each type of command took
+ *
+ * every run is timed as a whole, and GIS writes the time of each command to a trace file
+ * (its -trace option). the traces of all runs are pooled per command type into a count,
+ * a throughput and latency percentiles. by default every run is cold: the database and its
+ * snapshot are deleted first
+ *
+ * usage: replayHarness [options] <database file> <command script> <log file> [GIS options]
+ *      -runs <n> : runs (default 3)
+ *      -warmup <n> : runs before those, not reported (default 0)
+ *      -warm : keep the database snapshot between runs
+ *      -gis <jar> : run the GIS of an application jar (e.g. an older build) instead of the
+ *                   one built into the benchmarks
+ *      -jvm <option> : JVM option for the GIS runs, may be repeated
+ *      -notrace : end to end times only, for versions of GIS without -trace
+ *      -csv <file> : also write the per command table as CSV
+ *
+ * GIS runs in the directory of the command script, so the script's imports are found
+ *
+ * @author mason gelletly
+ * @version 5.19.22
+ */
+public class replayHarness
+{
+    // reported latency percentiles
+    private static final double[] percentiles = { 50, 90, 99, 99.9 };
+
+    public static void main(String[] args) throws Exception
+    {
+        int runs = 3;
+        int warmups = 0;
+        boolean warm = false;
+        boolean traced = true;
+        String jar = null;
+        String csv = null;
+        ArrayList<String> jvmOptions = new ArrayList<String>();
+
+        // HARNESS OPTIONS
+        int idx = 0;
+        while (idx < args.length && args[idx].startsWith("-"))
+        {
+            if (args[idx].equals("-warm"))
+            {
+                warm = true;
+                idx++;
+                continue;
+            }
+            if (args[idx].equals("-notrace"))
+            {
+                traced = false;
+                idx++;
+                continue;
+            }
+            if (idx + 1 >= args.length)
+            {
+                usage();
+            }
+
+            String value = args[idx + 1];
+            if (args[idx].equals("-runs"))
+            {
+                runs = Integer.parseInt(value);
+            }
+            else if (args[idx].equals("-warmup"))
+            {
+                warmups = Integer.parseInt(value);
+            }
+            else if (args[idx].equals("-gis"))
+            {
+                jar = value;
+            }
+            else if (args[idx].equals("-jvm"))
+            {
+                jvmOptions.add(value);
+            }
+            else if (args[idx].equals("-csv"))
+            {
+                csv = value;
+            }
+            else
+            {
+                usage();
+            }
+            idx += 2;
+        }
+        if (args.length - idx < 3 || runs < 1)
+        {
+            usage();
+        }
+
+        File database = new File(args[idx]).getAbsoluteFile();
+        File script = new File(args[idx + 1]).getAbsoluteFile();
+        File log = new File(args[idx + 2]).getAbsoluteFile();
+        List<String> gisOptions = Arrays.asList(args).subList(idx + 3, args.length);
+        File trace = new File(log.getPath() + ".trace");
+
+        // COMMAND LINE OF A RUN
+        //
+        ArrayList<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(jar != null ? jar : System.getProperty("java.class.path"));
+        command.add(jar != null ? "GIS" : "gis.GIS");
+        command.addAll(gisOptions);
+        if (traced)
+        {
+            command.add("-trace");
+            command.add(trace.getPath());
+        }
+        command.add(database.getPath());
+        command.add(script.getPath());
+        command.add(log.getPath());
+
+        // RUNS
+        //
+        LinkedHashMap<String, long[]> times = new LinkedHashMap<String, long[]>();
+        LinkedHashMap<String, Integer> counts = new LinkedHashMap<String, Integer>();
+        double[] wall = new double[runs];
+        for (int run = -warmups; run < runs; run++)
+        {
+            if (!warm)
+            {
+                database.delete();
+                new File(database.getPath() + ".snap").delete();
+            }
+
+            long started = System.nanoTime();
+            Process gis = new ProcessBuilder(command).directory(script.getParentFile())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            int exit = gis.waitFor();
+            double seconds = (System.nanoTime() - started) / 1e9;
+            if (exit != 0)
+            {
+                System.out.println("GIS exited with status " + exit);
+                System.exit(1);
+            }
+
+            // warmup runs are not reported
+            if (run < 0)
+            {
+                System.out.println(String.format("warmup %d: %.2f s", run + warmups + 1, seconds));
+                continue;
+            }
+            wall[run] = seconds;
+            System.out.println(String.format("run %d: %.2f s", run + 1, seconds));
+
+            if (traced)
+            {
+                readTrace(trace, times, counts);
+            }
+        }
+
+        // REPORT
+        //
+        double[] sortedWall = wall.clone();
+        Arrays.sort(sortedWall);
+        System.out.println(String.format("end to end: best %.2f s, median %.2f s over %d runs", sortedWall[0],
+            sortedWall[runs / 2], runs));
+        if (!traced)
+        {
+            return;
+        }
+
+        ArrayList<String> rows = new ArrayList<String>();
+        rows.add("command,count,total s,commands/s,p50 us,p90 us,p99 us,p99.9 us,max us");
+        System.out.println();
+        System.out.println(String.format("%-14s %9s %10s %12s %10s %10s %10s %10s %10s", "command", "count", "total s",
+            "commands/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us"));
+        for (String type : times.keySet())
+        {
+            long[] nanos = Arrays.copyOf(times.get(type), counts.get(type));
+            Arrays.sort(nanos);
+
+            long total = 0;
+            for (long curr : nanos)
+            {
+                total += curr;
+            }
+
+            StringBuilder line = new StringBuilder(String.format("%-14s %9d %10.3f %12.1f", type, nanos.length,
+                total / 1e9, nanos.length / (total / 1e9)));
+            StringBuilder row = new StringBuilder(String.format("%s,%d,%.6f,%.3f", type, nanos.length, total / 1e9,
+                nanos.length / (total / 1e9)));
+            for (double percentile : percentiles)
+            {
+                double micros = percentile(nanos, percentile) / 1e3;
+                line.append(String.format(" %10.1f", micros));
+                row.append(String.format(",%.3f", micros));
+            }
+            line.append(String.format(" %10.1f", nanos[nanos.length - 1] / 1e3));
+            row.append(String.format(",%.3f", nanos[nanos.length - 1] / 1e3));
+
+            System.out.println(line);
+            rows.add(row.toString());
+        }
+
+        if (csv != null)
+        {
+            try (PrintStream out = new PrintStream(csv, "UTF-8"))
+            {
+                for (String row : rows)
+                {
+                    out.println(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * adds the command times of one trace file (number, command, nanoseconds per line)
+     */
+    private static void readTrace(File trace, LinkedHashMap<String, long[]> times, LinkedHashMap<String, Integer> counts)
+        throws IOException
+    {
+        try (BufferedReader in = Files.newBufferedReader(trace.toPath(), StandardCharsets.ISO_8859_1))
+        {
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                String[] fields = line.split("\t");
+                if (fields.length != 3)
+                {
+                    continue;
+                }
+
+                // growable array per command type
+                long[] list = times.computeIfAbsent(fields[1], key -> new long[1024]);
+                int count = counts.getOrDefault(fields[1], 0);
+                if (count == list.length)
+                {
+                    list = Arrays.copyOf(list, count * 2);
+                    times.put(fields[1], list);
+                }
+                list[count] = Long.parseLong(fields[2]);
+                counts.put(fields[1], count + 1);
+            }
+        }
+    }
+
+    /**
+     * nearest rank percentile of sorted values
+     */
+    private static long percentile(long[] sorted, double percentile)
+    {
+        int rank = (int)Math.ceil(percentile / 100 * sorted.length);
+
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * prints the usage and exits
+     */
+    private static void usage()
+    {
+        System.out.println("usage: replayHarness [-runs <n>] [-warmup <n>] [-warm] [-gis <jar>] [-jvm <option>]..."
+            + " [-notrace] [-csv <file>] <database file> <command script> <log file> [GIS options]");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,150 @@
+package gis;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * compares two benchmark runs saved as JMH CSV results (-rf csv -rff file), e.g. one from
+ * before a change and one from after
+ *
+ * results are matched on benchmark, mode and parameters. each match is printed with both
+ * scores and the change; every mode the suite uses is a time per operation, so a negative
+ * change is an improvement. results found in only one file are listed as such
+ *
+ * usage: java -cp benchmarks.jar gis.resultDiff <before.csv> <after.csv>
+ *
+ * @author mason gelletly
+ * @version 5.18.22
+ */
+public class resultDiff
+{
+    /**
+     * one result row
+     */
+    private static class result
+    {
+        double score;
+        double error;
+        String unit;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 2)
+        {
+            System.out.println("usage: resultDiff <before.csv> <after.csv>");
+            System.exit(1);
+        }
+
+        LinkedHashMap<String, result> before = read(args[0]);
+        LinkedHashMap<String, result> after = read(args[1]);
+
+        System.out.println(String.format("%-70s %14s %14s %-8s %9s", "benchmark", "before", "after", "unit", "change"));
+        for (String key : before.keySet())
+        {
+            result old = before.get(key);
+            result now = after.get(key);
+            if (now == null)
+            {
+                System.out.println(String.format("%-70s %14.3f %14s %-8s", key, old.score, "-", old.unit));
+                continue;
+            }
+
+            // a change inside both error bars is noise
+            double change = (now.score - old.score) / old.score * 100;
+            boolean noise = Math.abs(now.score - old.score) <= old.error + now.error;
+            System.out.println(String.format("%-70s %14.3f %14.3f %-8s %+8.1f%%%s", key, old.score, now.score,
+                now.unit, change, noise ? " ~" : ""));
+        }
+        for (String key : after.keySet())
+        {
+            if (!before.containsKey(key))
+            {
+                result now = after.get(key);
+                System.out.println(String.format("%-70s %14s %14.3f %-8s", key, "-", now.score, now.unit));
+            }
+        }
+    }
+
+    /**
+     * reads a JMH CSV result file
+     *
+     * @param file : the file
+     * @return results by benchmark, mode and parameters, in file order
+     * @throws IOException
+     */
+    private static LinkedHashMap<String, result> read(String file) throws IOException
+    {
+        List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        LinkedHashMap<String, result> results = new LinkedHashMap<String, result>();
+        if (lines.isEmpty())
+        {
+            return results;
+        }
+
+        // columns: Benchmark, Mode, Threads, Samples, Score, Score Error, Unit, then the parameters
+        List<String> header = columns(lines.get(0));
+        for (int line = 1; line < lines.size(); line++)
+        {
+            List<String> row = columns(lines.get(line));
+            if (row.size() < 7)
+            {
+                continue;
+            }
+
+            // short benchmark name, its mode and any parameters it has
+            StringBuilder key = new StringBuilder(row.get(0).substring(row.get(0).lastIndexOf('.', row.get(0).lastIndexOf('.') - 1) + 1));
+            key.append(" ").append(row.get(1));
+            for (int idx = 7; idx < row.size() && idx < header.size(); idx++)
+            {
+                if (!row.get(idx).isEmpty())
+                {
+                    key.append(" ").append(header.get(idx).replace("Param: ", "")).append("=").append(row.get(idx));
+                }
+            }
+
+            result curr = new result();
+            curr.score = Double.parseDouble(row.get(4));
+            curr.error = row.get(5).isEmpty() || row.get(5).equals("NaN") ? 0 : Double.parseDouble(row.get(5));
+            curr.unit = row.get(6);
+            results.put(key.toString(), curr);
+        }
+
+        return results;
+    }
+
+    /**
+     * splits one CSV line, dropping the quotes around values
+     */
+    private static List<String> columns(String line)
+    {
+        ArrayList<String> columns = new ArrayList<String>();
+        StringBuilder curr = new StringBuilder();
+        boolean quoted = false;
+        for (int idx = 0; idx < line.length(); idx++)
+        {
+            char c = line.charAt(idx);
+            if (c == '"')
+            {
+                quoted = !quoted;
+            }
+            else if (c == ',' && !quoted)
+            {
+                columns.add(curr.toString());
+                curr.setLength(0);
+            }
+            else
+            {
+                curr.append(c);
+            }
+        }
+        columns.add(curr.toString());
+
+        return columns;
+    }
+}
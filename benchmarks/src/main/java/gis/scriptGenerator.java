@@ -0,0 +1,277 @@
+package gis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * writes a synthetic GIS workload: GNIS-shaped import files (see gnisData) and a command
+ * script that runs against them, for replaying GIS end to end (see replayHarness)
+ *
+ * the script sets the world to the continental US, imports the first file, and then mixes
+ * queries with the imports of the remaining files, spread evenly through it. queries only
+ * ask about features that have been imported by then, chosen with the data's key skew, so
+ * popular names are looked up most
+ *
+ * usage: scriptGenerator [options] <output directory>
+ *      -features <n> : features over all the import files (default 100000)
+ *      -files <n> : import files (default 4)
+ *      -commands <n> : query commands (default 10000)
+ *      -skew <uniform|zipf> : name repetition (default zipf)
+ *      -layout <uniform|clustered> : coordinates (default clustered)
+ *      -mix <command=weight,...> : query mix (default what_is=40,what_is_at=20,what_is_in=25,what_is_near=10,show=5)
+ *      -seed <n> : random seed (default 42)
+ *
+ * the output directory gets gnis_1.txt ... gnis_<files>.txt and script.txt. GIS must be run
+ * from that directory, since the script imports the files by name
+ *
+ * @author mason gelletly
+ * @version 5.19.22
+ */
+public class scriptGenerator
+{
+    // query commands the mix can hold
+    private static final String[] commands = { "what_is", "what_is_at", "what_is_in", "what_is_near", "show" };
+
+    // what_is_in and what_is_near shapes
+    private static final int[] halfSizes = { 15, 30, 60, 120 };
+    private static final int[] nearCounts = { 1, 5, 10, 25 };
+    private static final String[] filters = { "water", "structure", "pop" };
+
+    public static void main(String[] args) throws IOException
+    {
+        int features = 100000;
+        int files = 4;
+        int queries = 10000;
+        String skew = "zipf";
+        String layout = "clustered";
+        String mix = "what_is=40,what_is_at=20,what_is_in=25,what_is_near=10,show=5";
+        long seed = 42;
+
+        // OPTIONS
+        int idx = 0;
+        while (idx + 1 < args.length && args[idx].startsWith("-"))
+        {
+            String value = args[idx + 1];
+            if (args[idx].equals("-features"))
+            {
+                features = Integer.parseInt(value);
+            }
+            else if (args[idx].equals("-files"))
+            {
+                files = Integer.parseInt(value);
+            }
+            else if (args[idx].equals("-commands"))
+            {
+                queries = Integer.parseInt(value);
+            }
+            else if (args[idx].equals("-skew"))
+            {
+                skew = value;
+            }
+            else if (args[idx].equals("-layout"))
+            {
+                layout = value;
+            }
+            else if (args[idx].equals("-mix"))
+            {
+                mix = value;
+            }
+            else if (args[idx].equals("-seed"))
+            {
+                seed = Long.parseLong(value);
+            }
+            else
+            {
+                usage();
+            }
+            idx += 2;
+        }
+        if (idx != args.length - 1 || features < files || files < 1)
+        {
+            usage();
+        }
+
+        Path directory = Paths.get(args[idx]);
+        Files.createDirectories(directory);
+        int[] weights = weights(mix);
+
+        gnisData data = new gnisData(features, skew, layout, seed);
+
+        // IMPORT FILES
+        //
+        // contiguous runs of features, file f holds [bounds[f], bounds[f + 1])
+        int[] bounds = new int[files + 1];
+        for (int file = 0; file <= files; file++)
+        {
+            bounds[file] = (int)((long)features * file / files);
+        }
+        for (int file = 0; file < files; file++)
+        {
+            try (BufferedWriter out = Files.newBufferedWriter(directory.resolve(importName(file)), StandardCharsets.ISO_8859_1))
+            {
+                out.write(gnisData.header);
+                out.write('\n');
+                for (int feature = bounds[file]; feature < bounds[file + 1]; feature++)
+                {
+                    out.write(data.record(feature));
+                    out.write('\n');
+                }
+            }
+        }
+
+        // COMMAND SCRIPT
+        //
+        Random random = new Random(seed + 1);
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("script.txt"), StandardCharsets.ISO_8859_1))
+        {
+            out.write("; generated: " + features + " features in " + files + " files, " + queries + " queries, "
+                + skew + " names, " + layout + " coordinates, seed " + seed + "\n");
+            out.write("world\t1250000W\t0670000W\t250000N\t490000N\n");
+            out.write("import\t" + importName(0) + "\n");
+
+            int imported = 1;
+            for (int query = 0; query < queries; query++)
+            {
+                // the next import is due once its share of the queries has run
+                while (imported < files && query >= (long)queries * imported / files)
+                {
+                    out.write("import\t" + importName(imported) + "\n");
+                    imported++;
+                }
+
+                out.write(query(data, random, pick(weights, random), bounds[imported]));
+                out.write('\n');
+            }
+
+            // a script shorter than the file count still imports everything
+            while (imported < files)
+            {
+                out.write("import\t" + importName(imported++) + "\n");
+            }
+            out.write("quit\t\n");
+        }
+    }
+
+    /**
+     * one query command about a feature that has been imported
+     *
+     * @param command : index into commands
+     * @param imported : features imported so far
+     */
+    private static String query(gnisData data, Random random, int command, int imported)
+    {
+        int feature = data.nextFeature(random);
+        if (feature >= imported)
+        {
+            feature = random.nextInt(imported);
+        }
+        String lat = data.dmsLatitude(feature);
+        String lon = data.dmsLongitude(feature);
+
+        switch (commands[command])
+        {
+            case "what_is":
+                return "what_is\t" + data.name(feature) + "\t" + data.state(feature);
+
+            case "what_is_at":
+                return "what_is_at\t" + lat + "\t" + lon;
+
+            case "what_is_in":
+                // mostly the plain form, some filtered, a few long
+                String option = "";
+                int kind = random.nextInt(20);
+                if (kind < 2)
+                {
+                    option = "-filter\t" + filters[random.nextInt(filters.length)] + "\t";
+                }
+                else if (kind == 2)
+                {
+                    option = "-long\t";
+                }
+                return "what_is_in\t" + option + lat + "\t" + lon + "\t" + halfSizes[random.nextInt(halfSizes.length)]
+                    + "\t" + halfSizes[random.nextInt(halfSizes.length)];
+
+            case "what_is_near":
+                return "what_is_near\t" + lat + "\t" + lon + "\t" + nearCounts[random.nextInt(nearCounts.length)];
+
+            default:
+                return "show\tpool_stats";
+        }
+    }
+
+    /**
+     * parses the query mix
+     *
+     * @return a weight per entry of commands
+     */
+    private static int[] weights(String mix)
+    {
+        int[] weights = new int[commands.length];
+        for (String part : mix.split(","))
+        {
+            String[] pair = part.split("=");
+            int command = -1;
+            for (int idx = 0; idx < commands.length; idx++)
+            {
+                if (commands[idx].equals(pair[0].trim()))
+                {
+                    command = idx;
+                }
+            }
+            if (command < 0 || pair.length != 2)
+            {
+                usage();
+            }
+            weights[command] = Integer.parseInt(pair[1].trim());
+        }
+
+        return weights;
+    }
+
+    /**
+     * draws a command by weight
+     */
+    private static int pick(int[] weights, Random random)
+    {
+        int total = 0;
+        for (int weight : weights)
+        {
+            total += weight;
+        }
+
+        int target = random.nextInt(Math.max(1, total));
+        for (int idx = 0; idx < weights.length; idx++)
+        {
+            target -= weights[idx];
+            if (target < 0)
+            {
+                return idx;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * name of the file-th import file
+     */
+    private static String importName(int file)
+    {
+        return "gnis_" + (file + 1) + ".txt";
+    }
+
+    /**
+     * prints the usage and exits
+     */
+    private static void usage()
+    {
+        System.out.println("usage: scriptGenerator [-features <n>] [-files <n>] [-commands <n>] [-skew <uniform|zipf>]"
+            + " [-layout <uniform|clustered>] [-mix <command=weight,...>] [-seed <n>] <output directory>");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,167 @@
+package gis;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * coordinate index benchmarks for a prQuadTree with snapshot reads: what_is_in queries
+ * answered while an import is written into the same tree, against the same queries on a
+ * tree nobody is writing to
+ *
+ * each iteration starts from a tree bulk loaded with the first half of the data set. in the
+ * importing group one thread imports the second half chunk by chunk (each chunk one
+ * bulkLoad(), so one published write) while three threads query; the idle group only queries
+ *
+ * @author mason gelletly
+ * @version 5.23.22
+ */
+@State(Scope.Group)
+@Fork(value = 1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class snapshotTreeBench
+{
+    // lookups prepared per trial (a power of two)
+    private static final int probeCount = 1 << 14;
+
+    // half the side of a region query, 0.05 degrees
+    private static final long regionHalf = 180;
+
+    @Param({ "1000000" })
+    public int size;
+
+    @Param({ "uniform", "clustered" })
+    public String layout;
+
+    // features per import chunk
+    @Param({ "10000" })
+    public int chunk;
+
+    // the data set, loaded features and features still to import
+    private gnisData data;
+    private gisEntry[] probes;
+
+    // the shared tree, rebuilt every iteration
+    private prQuadTree<gisEntry> tree;
+    private int imported;
+
+    /**
+     * one query thread's position in the lookups
+     */
+    @State(Scope.Thread)
+    public static class cursor
+    {
+        int next = 0;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        data = new gnisData(size, "uniform", layout, 42);
+
+        // centred on features of the loaded half
+        Random random = new Random(7);
+        probes = new gisEntry[probeCount];
+        for (int idx = 0; idx < probeCount; idx++)
+        {
+            int feature = random.nextInt(size / 2);
+            probes[idx] = new gisEntry(data.latitude(feature), data.longitude(feature), -1);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void loadHalf() throws Exception
+    {
+        tree = new prQuadTree<gisEntry>(gnisData.xMin, gnisData.xMax, gnisData.yMin, gnisData.yMax, 1, true);
+        tree.bulkLoad(entries(0, size / 2));
+        imported = size / 2;
+    }
+
+    /**
+     * fresh entries for a run of features
+     */
+    private ArrayList<gisEntry> entries(int from, int to)
+    {
+        ArrayList<gisEntry> entries = new ArrayList<gisEntry>(to - from);
+        for (int idx = from; idx < to; idx++)
+        {
+            entries.add(new gisEntry(data.latitude(idx), data.longitude(idx), idx));
+        }
+
+        return entries;
+    }
+
+    /**
+     * what_is_in: every feature in a 0.1 degree square
+     */
+    private int region(cursor at)
+    {
+        gisEntry centre = probes[at.next++ & (probeCount - 1)];
+
+        return tree.find(centre.getX() - regionHalf, centre.getX() + regionHalf,
+            centre.getY() - regionHalf, centre.getY() + regionHalf).size();
+    }
+
+    /**
+     * a query while the import runs
+     */
+    @Benchmark
+    @Group("importing")
+    @GroupThreads(3)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int query(cursor at)
+    {
+        return region(at);
+    }
+
+    /**
+     * one chunk of the import, published as one write. once the second half is in, the
+     * import starts over on it and the chunks are merged in as duplicates
+     */
+    @Benchmark
+    @Group("importing")
+    @GroupThreads(1)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int load() throws Exception
+    {
+        if (imported >= size)
+        {
+            imported = size / 2;
+        }
+        int to = Math.min(size, imported + chunk);
+        int accepted = tree.bulkLoad(entries(imported, to));
+        imported = to;
+
+        return accepted;
+    }
+
+    /**
+     * the same query on a tree nobody is writing to
+     */
+    @Benchmark
+    @Group("idle")
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int queryAlone(cursor at)
+    {
+        return region(at);
+    }
+}
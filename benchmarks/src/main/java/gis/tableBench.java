@@ -0,0 +1,139 @@
+package gis;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * name index benchmarks: building a table from a data set, and looking names up in a built
+ * one. covers the open addressing probeTable GIS uses, the original chained hashtable and
+ * the lock-striped concurrentTable on a single thread (concurrentTableBench runs it on many)
+ *
+ * lookups follow the data set's key skew, so with zipf the popular names are looked up most
+ *
+ * @author mason gelletly
+ * @version 5.18.22
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class tableBench
+{
+    // lookups prepared per trial (a power of two)
+    private static final int probeCount = 1 << 16;
+
+    @Param({ "10000", "100000", "1000000", "10000000" })
+    public int size;
+
+    @Param({ "uniform", "zipf" })
+    public String skew;
+
+    @Param({ "probe", "chained", "concurrent" })
+    public String table;
+
+    // the data set, as GIS would index it
+    private String[] keys;
+
+    // built table and the lookups run against it
+    private probeTable<dataEntry> probed;
+    private hashtable<dataEntry> chained;
+    private concurrentTable<dataEntry> concurrent;
+    private boolean probing;
+    private boolean striped;
+    private dataEntry[] probes;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        probing = table.equals("probe");
+        striped = table.equals("concurrent");
+        gnisData data = new gnisData(size, skew, "uniform", 42);
+        keys = new String[size];
+        for (int idx = 0; idx < size; idx++)
+        {
+            keys[idx] = data.key(idx);
+        }
+
+        build();
+
+        Random random = new Random(7);
+        probes = new dataEntry[probeCount];
+        for (int idx = 0; idx < probeCount; idx++)
+        {
+            probes[idx] = new dataEntry(keys[data.nextFeature(random)], -1L);
+        }
+    }
+
+    /**
+     * indexes every record of the data set into an empty table, the way an import does
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object build()
+    {
+        if (probing)
+        {
+            probed = new probeTable<dataEntry>(256, 0.7);
+            for (int idx = 0; idx < keys.length; idx++)
+            {
+                long offset = idx;
+                probed.merge(new dataEntry(keys[idx], offset), (stored, added) -> stored.withLocation(offset));
+            }
+
+            return probed;
+        }
+
+        if (striped)
+        {
+            concurrent = new concurrentTable<dataEntry>(256, 0.75, null);
+            for (int idx = 0; idx < keys.length; idx++)
+            {
+                long offset = idx;
+                concurrent.merge(new dataEntry(keys[idx], offset), (stored, added) -> stored.withLocation(offset));
+            }
+
+            return concurrent;
+        }
+
+        chained = new hashtable<dataEntry>(256, 0.7);
+        for (int idx = 0; idx < keys.length; idx++)
+        {
+            chained.insert(new dataEntry(keys[idx], (long)idx));
+        }
+
+        return chained;
+    }
+
+    /**
+     * one name lookup
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public dataEntry find()
+    {
+        dataEntry probe = probes[next++ & (probeCount - 1)];
+
+        if (striped)
+        {
+            return concurrent.find(probe);
+        }
+
+        return probing ? probed.find(probe) : chained.find(probe);
+    }
+}
@@ -0,0 +1,354 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * fixed size cache of database file blocks, an alternative to memory mapping the whole file
+ * behind recordStore
+ *
+ * the file is read in aligned blocks (a power of two between 4 KB and 64 KB) into a fixed
+ * number of frames. records that sit next to each other in the file come out of the same
+ * cached block instead of each costing a read. frames are heap buffers, or direct buffers
+ * outside the Java heap if asked for
+ *
+ * eviction is CLOCK: every frame has a reference bit, set on use. the hand sweeps the frames,
+ * clearing set bits and evicting the first frame it finds with a clear one
+ *
+ * read-ahead: when a miss lands on the block right after the previous miss, the lookups are
+ * walking the file in order (a sorted region query, an import check), so the next few
+ * blocks are loaded too. read-ahead blocks come in with a clear reference bit, so if they are
+ * never used they are the first to go
+ *
+ * blocks at the end of the file may be partly filled; they are read again once the file has
+ * grown past them, or when a record runs into their end (the file may be appended to while
+ * records are read). the cache is synchronized, so one cache can serve several threads
+ *
+ * @author mason gelletly
+ * @version 5.16.22
+ */
+public class blockCache
+{
+    // block size bounds
+    public static final int minBlockSize = 1 << 12;
+    public static final int maxBlockSize = 1 << 16;
+
+    // channel of the database file, read with positional reads only
+    private FileChannel channel;
+
+    // block geometry
+    private int blockSize;
+    private int blockShift;
+
+    // FRAMES
+    private ByteBuffer[] frames; // block contents
+    private long[] blockOf; // block number held by each frame, -1 if empty
+    private int[] valid; // bytes of the block actually read
+    private boolean[] referenced; // CLOCK bits
+    private HashMap<Long, Integer> frameOf = new HashMap<Long, Integer>(); // block number -> frame
+    private int hand = 0;
+
+    // READ-AHEAD
+    private int readAhead;
+    private long lastMiss = -2;
+
+    // counters
+    private long hits = 0;
+    private long misses = 0;
+    private long prefetched = 0;
+    private long evictions = 0;
+
+    /**
+     * constructor for the cache
+     *
+     * @param channel : channel of the database file
+     * @param blockSize : bytes per block, rounded up to a power of two within the bounds
+     * @param blocks : number of frames (at least 2)
+     * @param direct : true to keep the frames in direct memory
+     * @param readAhead : blocks loaded past a sequential miss; 0 to turn read-ahead off
+     */
+    public blockCache(FileChannel channel, int blockSize, int blocks, boolean direct, int readAhead)
+    {
+        this.channel = channel;
+
+        // power of two block size
+        int size = Math.min(maxBlockSize, Math.max(minBlockSize, blockSize));
+        this.blockShift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        this.blockSize = 1 << blockShift;
+
+        // never prefetch more than half the cache
+        int count = Math.max(2, blocks);
+        this.readAhead = Math.max(0, Math.min(readAhead, count / 2));
+
+        frames = new ByteBuffer[count];
+        for (int idx = 0; idx < count; idx++)
+        {
+            frames[idx] = direct ? ByteBuffer.allocateDirect(this.blockSize) : ByteBuffer.allocate(this.blockSize);
+        }
+        blockOf = new long[count];
+        Arrays.fill(blockOf, -1);
+        valid = new int[count];
+        referenced = new boolean[count];
+    }
+
+    /**
+     * copies out the record that begins at the given offset, without its line terminator
+     *
+     * @param offset : database offset of the record
+     * @return the record bytes
+     * @throws IOException
+     */
+    public synchronized ByteBuffer record(long offset) throws IOException
+    {
+        // first pass finds the end of the record, second pass copies it
+        long end = offset;
+        while (true)
+        {
+            long block = end >>> blockShift;
+            int frame = frameFor(block, true);
+            int start = (int)(end - (block << blockShift));
+
+            // past the end of a partly filled block, the file may have grown since it was read
+            if (start >= valid[frame] && valid[frame] < blockSize)
+            {
+                frame = reload(block, frame);
+                if (start >= valid[frame])
+                {
+                    break;
+                }
+            }
+
+            // look for the terminator within this block
+            ByteBuffer buffer = frames[frame];
+            int idx = start;
+            while (idx < valid[frame] && buffer.get(idx) != '\n' && buffer.get(idx) != '\r')
+            {
+                idx++;
+            }
+            end += idx - start;
+
+            // found
+            if (idx < valid[frame])
+            {
+                break;
+            }
+
+            // the end of a partly filled block is the end of the file, unless the file has
+            // grown since the block was read: the next pass goes on in the new bytes
+            if (valid[frame] < blockSize)
+            {
+                frame = reload(block, frame);
+                if (valid[frame] == idx)
+                {
+                    break;
+                }
+            }
+        }
+
+        // copy the record out, it must not change if its frame is reused
+        byte[] copy = new byte[(int)(end - offset)];
+        int copied = 0;
+        while (copied < copy.length)
+        {
+            long position = offset + copied;
+            long block = position >>> blockShift;
+            int frame = frameFor(block, false);
+            int start = (int)(position - (block << blockShift));
+            int length = Math.min(copy.length - copied, valid[frame] - start);
+
+            frames[frame].get(start, copy, copied, length);
+            copied += length;
+        }
+
+        return ByteBuffer.wrap(copy);
+    }
+
+    /**
+     * drops every cached block, e.g. after the database file was truncated
+     */
+    public synchronized void clear()
+    {
+        frameOf.clear();
+        Arrays.fill(blockOf, -1);
+        Arrays.fill(valid, 0);
+        Arrays.fill(referenced, false);
+        lastMiss = -2;
+    }
+
+    /**
+     * finds the frame holding a block, loading it (and any read-ahead) on a miss
+     *
+     * @param block : block number
+     * @param count : true to count the lookup as a hit or a miss
+     * @return the frame
+     */
+    private int frameFor(long block, boolean count) throws IOException
+    {
+        Integer frame = frameOf.get(block);
+        if (frame != null)
+        {
+            if (count)
+            {
+                hits++;
+            }
+            referenced[frame] = true;
+            return frame;
+        }
+
+        if (count)
+        {
+            misses++;
+        }
+        int loaded = load(block, true);
+
+        // sequential misses pull in the blocks that follow
+        if (block == lastMiss + 1)
+        {
+            long fileLength = channel.size();
+            for (long next = block + 1; next <= block + readAhead && (next << blockShift) < fileLength; next++)
+            {
+                if (!frameOf.containsKey(next))
+                {
+                    load(next, false);
+                    prefetched++;
+                }
+            }
+        }
+        lastMiss = block;
+
+        return loaded;
+    }
+
+    /**
+     * loads a block into a frame chosen by the CLOCK hand
+     *
+     * @param block : block number
+     * @param use : reference bit of the new frame
+     * @return the frame
+     */
+    private int load(long block, boolean use) throws IOException
+    {
+        // CLOCK sweep, a second pass always finds a clear bit
+        while (referenced[hand] && blockOf[hand] >= 0)
+        {
+            referenced[hand] = false;
+            hand = (hand + 1) % frames.length;
+        }
+        int frame = hand;
+        hand = (hand + 1) % frames.length;
+
+        // evict the previous block
+        if (blockOf[frame] >= 0)
+        {
+            frameOf.remove(blockOf[frame]);
+            evictions++;
+        }
+
+        read(block, frame);
+        blockOf[frame] = block;
+        referenced[frame] = use;
+        frameOf.put(block, frame);
+
+        return frame;
+    }
+
+    /**
+     * reads a partly filled block again in place
+     *
+     * @return the frame
+     */
+    private int reload(long block, int frame) throws IOException
+    {
+        read(block, frame);
+        return frame;
+    }
+
+    /**
+     * positional read of a block into a frame, as much of it as the file holds
+     */
+    private void read(long block, int frame) throws IOException
+    {
+        ByteBuffer buffer = frames[frame].clear();
+        long position = block << blockShift;
+        while (buffer.hasRemaining())
+        {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+            {
+                break;
+            }
+        }
+        valid[frame] = buffer.position();
+    }
+
+    /**
+     * simple getter for the block size
+     *
+     * @return bytes per block
+     */
+    public int blockSize()
+    {
+        return blockSize;
+    }
+
+    /**
+     * simple getter for the number of frames
+     *
+     * @return the cache size in blocks
+     */
+    public int blocks()
+    {
+        return frames.length;
+    }
+
+    /**
+     * simple getter for the frame memory
+     *
+     * @return true if the frames are direct buffers
+     */
+    public boolean isDirect()
+    {
+        return frames[0].isDirect();
+    }
+
+    /**
+     * simple getter for the number of block lookups served from the cache
+     *
+     * @return the hit count
+     */
+    public synchronized long hits()
+    {
+        return hits;
+    }
+
+    /**
+     * simple getter for the number of block lookups that had to read the file
+     *
+     * @return the miss count
+     */
+    public synchronized long misses()
+    {
+        return misses;
+    }
+
+    /**
+     * simple getter for the number of blocks loaded by read-ahead
+     *
+     * @return the read-ahead count
+     */
+    public synchronized long prefetched()
+    {
+        return prefetched;
+    }
+
+    /**
+     * simple getter for the number of blocks evicted
+     *
+     * @return the eviction count
+     */
+    public synchronized long evictions()
+    {
+        return evictions;
+    }
+}
@@ -1,107 +1,334 @@
-**
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
  * bufferpool data structure in order to increase efficiency of J5 searching
- * 
- * holds up to 15 records (raw strings) & utilizes LRU (least recently used) replacement
- * 
+ *
+ * holds up to capacity records (raw strings, 15 by default) keyed by their database offset
+ * & utilizes LRU (least recently used) replacement unless given another poolPolicy
+ *
  * the pool will automatically update positions based upon recency of use. repositioning
- * will be handled by the insertion method
- * 
- * indice [0] will be the most recently used
- * indice [14] will be the least recently used
- * 
- * underlying stack data structure is utilized to represent the pool
- * 
+ * will be handled by the insertion and find methods
+ *
+ * records are kept on a doubly linked list running from the most recently used to the least
+ * recently used, with a hash map from offset to list node beside it. a hit, an insert and an
+ * eviction each touch a fixed number of nodes, so the pool can hold thousands of records
+ *
+ * which record leaves a full pool, and whether a new record gets in at all, is up to the
+ * policy. the list always stays in recency order, whatever the policy, so the pool is
+ * displayed MRU to LRU
+ *
  * @author mason gelletly
- * @version 4.22.22
+ * @version 5.15.22
  */
-public class bufferPool 
-{        
-    // initialize underlying stack 
-    private Stack<String> pool = new Stack<String>(); 
-    
-    /**
-     * method to insert given entry and reposition other elements. additionally acts as an update() 
-     * of sorts if given a string that is already present in the pool
-     * 
+public class bufferPool implements Iterable<String>
+{
+    // default number of records held
+    private static final int defaultCapacity = 15;
+
+    /**
+     * a pooled record, linked into the recency list
+     */
+    private static class poolNode
+    {
+        Long offset;
+        String record;
+        poolNode prev;
+        poolNode next;
+    }
+
+    // most records the pool holds
+    private int capacity;
+
+    // offset -> list node
+    private HashMap<Long, poolNode> index;
+
+    // sentinel of the recency list. head.next is the MRU record, head.prev the LRU record
+    private poolNode head = new poolNode();
+
+    // replacement and admission decisions
+    private poolPolicy policy;
+
+    // counters
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long rejections = 0;
+
+    /**
+     * default constructor, LRU pool of 15 records
+     */
+    public bufferPool()
+    {
+        this(defaultCapacity);
+    }
+
+    /**
+     * constructor for an LRU pool of the given size
+     *
+     * @param capacity : most records the pool holds (at least 1)
+     */
+    public bufferPool(int capacity)
+    {
+        this(capacity, new lruPolicy());
+    }
+
+    /**
+     * constructor for a pool of the given size and policy
+     *
+     * @param capacity : most records the pool holds (at least 1)
+     * @param policy : replacement policy, see poolPolicy.forName()
+     */
+    public bufferPool(int capacity, poolPolicy policy)
+    {
+        this.capacity = Math.max(1, capacity);
+        this.index = new HashMap<Long, poolNode>();
+        this.policy = policy;
+
+        // empty list, the sentinel points to itself
+        head.next = head;
+        head.prev = head;
+    }
+
+    /**
+     * method to insert given entry and reposition other elements. additionally acts as an update()
+     * of sorts if given a record that is already present in the pool
+     *
+     * @param offset : database offset of the record
      * @param newRecord : new record to be inserted
      */
-    public void insert(String newRecord)
-    {        
-        // check if already in pool (only first 15 indices)
-        for (int idx = 0; idx < pool.size(); idx++)
+    public void insert(Long offset, String newRecord)
+    {
+        // already pooled, refresh it and move it to the front
+        poolNode node = index.get(offset);
+        if (node != null)
         {
-            // if match, remove element from its current indice
-            if (pool.get(idx).equals(newRecord))
+            node.record = newRecord;
+            unlink(node);
+            linkFirst(node);
+            policy.onHit(offset);
+            return;
+        }
+
+        // LIMITING THE SIZE OF THE POOL
+        //
+        // a full pool gives up the policy's victim, if the policy lets the new record in
+        if (index.size() >= capacity)
+        {
+            poolNode victim = index.get(policy.victim(head.prev.offset));
+            if (victim == null)
             {
-                pool.remove(idx);
+                victim = head.prev;
+            }
+            if (!policy.admit(offset, victim.offset))
+            {
+                rejections++;
+                return;
+            }
+            
+            unlink(victim);
+            index.remove(victim.offset);
+            policy.onEvict(victim.offset);
+            evictions++;
+
+            gisEvents.poolEviction event = new gisEvents.poolEviction();
+            if (event.isEnabled())
+            {
+                event.policy = policy.name();
+                event.evicted = victim.offset;
+                event.inserted = offset;
+                event.commit();
             }
         }
-        
+
         // move to front due to LRU
-        pool.add(0, newRecord);
+        node = new poolNode();
+        node.offset = offset;
+        node.record = newRecord;
+        index.put(offset, node);
+        linkFirst(node);
+        policy.onInsert(offset);
+    }
+
+    /**
+     * lookup by database offset. a hit is moved to the front of the pool
+     *
+     * @param offset : database offset of the record
+     * @return : the record at that offset, null if it is not in the pool
+     */
+    public String find(Long offset)
+    {
+        policy.onAccess(offset);
         
-        // LIMITING THE SIZE OF THE STACK TO 15
-        // 
-        // remove the 16th record if stack exceeds size 15
-        if (pool.size() > 15)
+        poolNode node = index.get(offset);
+        if (node == null)
         {
-            // remove the 16th record 
-            pool.remove(15);
+            misses++;
+            return null;
         }
+
+        // LRU update
+        hits++;
+        unlink(node);
+        linkFirst(node);
+        policy.onHit(offset);
+        return node.record;
     }
-    
+
     /**
-     * getter method for the pool
-     * 
-     * @param index : the index of the string to be found
-     * @return : the string at the parameterized indice
+     * getter method for the number of records in the pool
+     *
+     * @return : the number of elements in the pool
      */
-    public String get(int index)
+    public int size()
     {
-        // simply use stack library's get()
-        return pool.get(index);
+        return index.size();
     }
-    
+
     /**
-     * contains method for the pool
-     * 
-     * returns true or false depending on if the pool contains the given string
+     * getter method for the most records the pool holds
+     *
+     * @return : the capacity of the pool
      */
-    public boolean contains(String compareString)
+    public int capacity()
     {
-        return pool.contains(compareString);
+        return capacity;
     }
-    
-    
+
     /**
-     * getter method for the capacity of the stack (size)
-     * 
-     * @return : the number of elements in the pool
+     * getter method for the number of find() calls answered from the pool
+     *
+     * @return : the hit count
      */
-    public int size()
+    public long hits()
+    {
+        return hits;
+    }
+
+    /**
+     * getter method for the number of find() calls the pool could not answer
+     *
+     * @return : the miss count
+     */
+    public long misses()
+    {
+        return misses;
+    }
+
+    /**
+     * getter method for the number of records pushed out to make room
+     *
+     * @return : the eviction count
+     */
+    public long evictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * getter method for the number of new records the policy kept out of a full pool
+     *
+     * @return : the rejection count
+     */
+    public long rejections()
+    {
+        return rejections;
+    }
+
+    /**
+     * getter method for the share of find() calls answered from the pool
+     *
+     * @return : hits / lookups, 0 before the first lookup
+     */
+    public double hitRate()
+    {
+        long lookups = hits + misses;
+        return (lookups == 0) ? 0.0 : (double)hits / lookups;
+    }
+
+    /**
+     * getter method for the replacement policy
+     *
+     * @return : the policy
+     */
+    public poolPolicy policy()
+    {
+        return policy;
+    }
+
+    /**
+     * iterates the pooled records from the most recently used to the least recently used
+     *
+     * @return : the iterator
+     */
+    @Override
+    public Iterator<String> iterator()
     {
-        // return pool's size(should be 0-15)
-        return pool.size();
+        return new Iterator<String>()
+        {
+            private poolNode curr = head.next;
+
+            @Override
+            public boolean hasNext()
+            {
+                return curr != head;
+            }
+
+            @Override
+            public String next()
+            {
+                if (curr == head)
+                {
+                    throw new NoSuchElementException();
+                }
+                String record = curr.record;
+                curr = curr.next;
+                return record;
+            }
+        };
     }
+
     /**
-     * display function meant to return a string that is capable of 
+     * display function meant to return a string that is capable of
      * accurately reprenting the records within it
-     * 
+     *
      * @return : the contents of the buffer pool
      */
     public String display()
     {
         // string builder object initialization for ease of concatenation
         StringBuilder sb = new StringBuilder();
-        
-        // iterates through pool and add contents to sb 
-        for (String currString : pool)
+
+        // iterates through pool and add contents to sb
+        for (String currString : this)
         {
-            sb.append(currString + "\n");           
+            sb.append(currString + "\n");
         }
-        
+
         // return string
         return sb.toString();
     }
-    
+
+    /**
+     * links a node in at the MRU end of the list
+     */
+    private void linkFirst(poolNode node)
+    {
+        node.prev = head;
+        node.next = head.next;
+        head.next.prev = node;
+        head.next = node;
+    }
+
+    /**
+     * takes a node out of the list
+     */
+    private void unlink(poolNode node)
+    {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
 }
@@ -0,0 +1,450 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * hash table for the GIS feature name index that can be shared between threads: import
+ * workers inserting names while query threads look them up
+ *
+ * holds the same kind of entries as probeTable and hashtable (a feature name key and the file
+ * offsets of the records that MATCH that name)
+ *
+ * @author mason gelletly
+ * @version 5.22.22
+ *
+ * The table is split into a fixed, power of two number of segments, each a chained hash table
+ * of its own behind its own lock. The high bits of an element's (spread) hash pick the
+ * segment and the low bits the bin within it, so writers on different names rarely meet on
+ * the same lock.
+ *
+ * Reads never lock. A chain is a list of immutable nodes and every change to a segment is
+ * published with a single volatile write (a new first node for a bin, or a whole new bin
+ * array after a resize), so a reader walking a chain always sees a complete, consistent one.
+ *
+ * Each segment grows on its own: the writer whose insert takes the segment over the load
+ * limit doubles that segment's bins while holding only its lock. Writers on the other
+ * segments carry on, and readers keep using the old bins until the new ones are published.
+ *
+ * Elements inserted to the table must implement the Hashable interface:
+ * public int Hash();
+ *
+ * The table never looks inside its elements. putIfAbsent() hands back the element already
+ * stored for a duplicate; merge() also calls a merger on it while the segment is locked,
+ * so combining a duplicate with the stored element (e.g. adding a file offset) is atomic
+ * with respect to every other insert or merge of that name.
+ *
+ * Merges are copy-on-write, like the chains themselves: the merger returns a new element,
+ * and the node holding the old one is replaced (along with the nodes ahead of it in its
+ * chain) by the same single volatile write. An element a reader got from find() is never
+ * changed afterwards, so callers must not modify stored elements in place either.
+ */
+public class concurrentTable<T extends Hashable<T> > implements nameIndex<T>
+{
+    private static final int defaultSegments = 64; // default number of segments (lock stripes)
+    private static final int minBins = 4; // fewest bins in a segment
+    private static final double maxLoadLimit = 4.0; // most elements per bin before growing
+
+    private segment<T>[] segments; // physical basis for the hash table
+    private int segmentShift; // the top bits of a hash, from segmentShift up, pick the segment
+    private int segmentMask; // segment count - 1
+    private double loadLimit = 0.75; // segment resize trigger
+    private final LongAdder lookups = new LongAdder(); // find() calls
+    private final LongAdder probes = new LongAdder(); // nodes examined by find()
+
+    /**
+     * one chain entry, never changed once published
+     */
+    private static class node<T>
+    {
+        final int hash;
+        final T elem;
+        final node<T> next;
+
+        node(int hash, T elem, node<T> next)
+        {
+            this.hash = hash;
+            this.elem = elem;
+            this.next = next;
+        }
+    }
+
+    /**
+     * one lock stripe: a chained table of its own
+     */
+    @SuppressWarnings("serial")
+    private static class segment<T> extends ReentrantLock
+    {
+        volatile AtomicReferenceArray<node<T>> bins; // replaced whole on resize
+        volatile int count = 0; // elements held, written under the lock
+
+        segment(int bins)
+        {
+            this.bins = new AtomicReferenceArray<node<T>>(bins);
+        }
+    }
+
+    /**
+     * Constructs an empty table with the following properties:
+     * Pre:
+     * - size is the user's desired number of slots over all the segments; null for default
+     * - ldLimit is user's desired load factor limit for resizing a segment; null for the default
+     * - stripes is the user's desired number of segments; null for the default (64)
+     * Post:
+     * - the table has at least stripes segments and size bins, both rounded up to powers of two
+     * - loadLimit is set to default (0.75) if ldLimit == null
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public concurrentTable(Integer size, Double ldLimit, Integer stripes)
+    {
+        // segments handling
+        int segmentCount = defaultSegments;
+        if (stripes != null && stripes > 0)
+        {
+            segmentCount = powerOfTwo(stripes);
+        }
+        segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        segmentMask = segmentCount - 1;
+
+        // ldLimit handling
+        if (ldLimit != null && ldLimit > 0)
+        {
+            loadLimit = Math.min(ldLimit, maxLoadLimit);
+        }
+
+        // size handling, spread over the segments
+        int bins = minBins;
+        if (size != null && size > 0)
+        {
+            bins = Math.max(minBins, powerOfTwo(size) / segmentCount);
+        }
+
+        segments = (segment<T>[])new segment[segmentCount];
+        for (int idx = 0; idx < segmentCount; idx++)
+        {
+            segments[idx] = new segment<T>(bins);
+        }
+    }
+
+    /**
+     * Inserts elem unless a matching element is already stored (according to the
+     * equals() method for the user's data type).
+     *
+     * Returns:
+     * true if elem has been inserted, false if it was a duplicate
+     */
+    public boolean insert(T elem)
+    {
+        return merge(elem, null) == null;
+    }
+
+    /**
+     * Inserts elem unless a matching element is already stored, in which case the stored
+     * element is returned and the table is left unchanged.
+     *
+     * Returns:
+     * the matching element already in the table; null if elem has been inserted
+     */
+    public T putIfAbsent(T elem)
+    {
+        return merge(elem, null);
+    }
+
+    /**
+     * Inserts elem unless a matching element is already stored. For a duplicate the merger
+     * is called with the stored element and elem while the segment is locked, so no other
+     * insert or merge of the same name can run in between, and the element it returns
+     * replaces the stored one.
+     *
+     * Pre:
+     * - elem is a valid user data object
+     * - merger does not use the table and changes neither element; null to leave a stored
+     * element as it is
+     *
+     * Returns:
+     * the element now stored for a duplicate; null if elem has been inserted
+     */
+    public T merge(T elem, BinaryOperator<T> merger)
+    {
+        int hash = spread(elem.Hash());
+        segment<T> seg = segmentFor(hash);
+
+        seg.lock();
+        try
+        {
+            AtomicReferenceArray<node<T>> bins = seg.bins;
+            int idx = hash & (bins.length() - 1);
+            node<T> first = bins.get(idx);
+
+            // DUPLICATE CHECK
+            for (node<T> curr = first; curr != null; curr = curr.next)
+            {
+                if (curr.hash == hash && curr.elem.equals(elem))
+                {
+                    if (merger == null)
+                    {
+                        return curr.elem;
+                    }
+
+                    // publish a copy of the chain up to the match, ending in a node for the
+                    // merged element; the nodes behind it are shared
+                    T merged = merger.apply(curr.elem, elem);
+                    if (merged != curr.elem)
+                    {
+                        bins.set(idx, replace(first, curr, new node<T>(hash, merged, curr.next)));
+                    }
+                    return merged;
+                }
+            }
+
+            // publish the new first node of the bin
+            bins.set(idx, new node<T>(hash, elem, first));
+            seg.count = seg.count + 1;
+
+            // LOAD FACTOR & RESIZING, this segment only
+            if (seg.count > loadLimit * bins.length())
+            {
+                resize(seg);
+            }
+
+            return null;
+        }
+        finally
+        {
+            seg.unlock();
+        }
+    }
+
+    /** Searches the table for an element that matches elem (according to
+     * the equals() method for the user's data type). Never blocks.
+     *
+     * Returns:
+     * reference to the matching element; null if no match is found
+     */
+    public T find(T elem)
+    {
+        int hash = spread(elem.Hash());
+        AtomicReferenceArray<node<T>> bins = segmentFor(hash).bins;
+        int probe = 0;
+        T found = null;
+
+        for (node<T> curr = bins.get(hash & (bins.length() - 1)); curr != null; curr = curr.next)
+        {
+            probe++;
+            if (curr.hash == hash && curr.elem.equals(elem))
+            {
+                found = curr.elem;
+                break;
+            }
+        }
+
+        lookups.increment();
+        probes.add(probe);
+
+        // null if no match was found
+        return found;
+    }
+
+    /**
+     * simple getter for the number of bins over all the segments
+     *
+     * @return the table size
+     */
+    public int getSize()
+    {
+        int size = 0;
+        for (segment<T> seg : segments)
+        {
+            size += seg.bins.length();
+        }
+
+        return size;
+    }
+
+    /**
+     * simple getter for the number of stored elements. with writers running the count may
+     * be a moment behind
+     *
+     * @return the element count
+     */
+    public int numElements()
+    {
+        int count = 0;
+        for (segment<T> seg : segments)
+        {
+            count += seg.count;
+        }
+
+        return count;
+    }
+
+    /**
+     * simple getter for the number of lookups
+     *
+     * @return the number of find() calls
+     */
+    public long lookups()
+    {
+        return lookups.sum();
+    }
+
+    /**
+     * simple getter for the number of nodes examined by lookups
+     *
+     * @return the probe count
+     */
+    public long probes()
+    {
+        return probes.sum();
+    }
+
+    /**
+     * simple getter for the number of segments
+     *
+     * @return the lock stripe count
+     */
+    public int stripes()
+    {
+        return segments.length;
+    }
+
+    /**
+     * performs the given action on every stored element, segment by segment. elements
+     * inserted while this runs may or may not be included
+     *
+     * @param action : called once per element
+     */
+    public void forEach(Consumer<? super T> action)
+    {
+        for (segment<T> seg : segments)
+        {
+            AtomicReferenceArray<node<T>> bins = seg.bins;
+            for (int idx = 0; idx < bins.length(); idx++)
+            {
+                for (node<T> curr = bins.get(idx); curr != null; curr = curr.next)
+                {
+                    action.accept(curr.elem);
+                }
+            }
+        }
+    }
+
+    /** Writes a formatted display of the hash table contents.
+     */
+    public String display()
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("Number of elements: " + numElements() + "\n");
+        sb.append("Number of slots: " + getSize() + " in " + segments.length + " segments\n");
+        sb.append("Load limit: " + loadLimit + "\n");
+        sb.append("\n");
+
+        sb.append("Slot Contents\n");
+
+        // slots are numbered through the segments in order
+        int slot = 0;
+        for (segment<T> seg : segments)
+        {
+            AtomicReferenceArray<node<T>> bins = seg.bins;
+            for (int idx = 0; idx < bins.length(); idx++, slot++)
+            {
+                node<T> curr = bins.get(idx);
+                if (curr == null)
+                {
+                    continue;
+                }
+
+                sb.append(String.format("%5d: [", slot));
+                for (; curr != null; curr = curr.next)
+                {
+                    sb.append(curr.elem.toString()).append((curr.next != null) ? ", " : "");
+                }
+                sb.append("]\n");
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * doubles a segment's bins, called with the segment locked. the old bins are left
+     * untouched for readers still walking them and the new ones are published in one write
+     */
+    private void resize(segment<T> seg)
+    {
+        gisEvents.tableRehash event = new gisEvents.tableRehash();
+        event.begin();
+
+        AtomicReferenceArray<node<T>> oldBins = seg.bins;
+        AtomicReferenceArray<node<T>> newBins = new AtomicReferenceArray<node<T>>(oldBins.length() * 2);
+        int mask = newBins.length() - 1;
+
+        // nodes are immutable, so each one is copied into its new chain
+        for (int idx = 0; idx < oldBins.length(); idx++)
+        {
+            for (node<T> curr = oldBins.get(idx); curr != null; curr = curr.next)
+            {
+                int home = curr.hash & mask;
+                newBins.set(home, new node<T>(curr.hash, curr.elem, newBins.get(home)));
+            }
+        }
+        seg.bins = newBins;
+
+        if (event.shouldCommit())
+        {
+            event.oldSlots = oldBins.length();
+            event.newSlots = newBins.length();
+            event.elements = seg.count;
+            event.commit();
+        }
+    }
+
+    /**
+     * copies the chain from first up to (not including) target, ending in replacement.
+     * chains are a handful of nodes long, so the recursion stays shallow
+     */
+    private static <T> node<T> replace(node<T> first, node<T> target, node<T> replacement)
+    {
+        if (first == target)
+        {
+            return replacement;
+        }
+
+        return new node<T>(first.hash, first.elem, replace(first.next, target, replacement));
+    }
+
+    /**
+     * segment of a spread hash (a shift of 32 is no shift at all in Java, hence the mask)
+     */
+    private segment<T> segmentFor(int hash)
+    {
+        return segments[(hash >>> segmentShift) & segmentMask];
+    }
+
+    /**
+     * mixes the high bits of a hash into the low ones, the segment comes from the top of
+     * the hash and the bin from the bottom
+     */
+    private static int spread(int hash)
+    {
+        int spread = hash * 0x9E3779B9;
+
+        return spread ^ (spread >>> 16);
+    }
+
+    /**
+     * rounds a requested count up to the next power of two
+     */
+    private static int powerOfTwo(int size)
+    {
+        int capacity = 1;
+        while (capacity < size && capacity < (1 << 30))
+        {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+}
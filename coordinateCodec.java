@@ -0,0 +1,296 @@
+import java.nio.ByteBuffer;
+
+/**
+ * reads and writes GIS coordinates without creating any intermediate Strings
+ *
+ * DMS coordinates are fixed width: DDMMSSh for a latitude (h is N or S) and DDDMMSSh for a
+ * longitude (h is W or E). they are converted to total seconds, negative for south and west,
+ * and formatted as "38d 30m 0s North" / "79d 30m 0s West"
+ *
+ * the decimal degree columns of a GIS record (e.g. -79.4819444) are converted to total
+ * seconds as well, rounded to the nearest second
+ *
+ * every method comes in two flavours: one reading a CharSequence (command arguments, pooled
+ * records) and one reading an absolute range of a ByteBuffer in the database encoding
+ * (tokenized records). malformed input throws a NumberFormatException
+ *
+ * @author mason gelletly
+ * @version 5.13.22
+ */
+public class coordinateCodec
+{
+    // width of the degree part of a DMS latitude and longitude
+    private static final int latDegreeDigits = 2;
+    private static final int longDegreeDigits = 3;
+
+    // ----------------------------------- DMS ---------------------------------------------
+    /**
+     * converts a DMS latitude to seconds
+     *
+     * @param rawCoord : DDMMSSh, e.g. 383000N
+     * @return the latitude in seconds, negative if south
+     */
+    public static long parseLatitude(CharSequence rawCoord)
+    {
+        return dms(null, rawCoord, 0, rawCoord.length(), latDegreeDigits, 'S');
+    }
+
+    /**
+     * converts a DMS latitude held in a buffer to seconds
+     *
+     * @param buffer : the buffer
+     * @param from : absolute index of the first char
+     * @param to : absolute index just past the last char
+     * @return the latitude in seconds, negative if south
+     */
+    public static long parseLatitude(ByteBuffer buffer, int from, int to)
+    {
+        return dms(buffer, null, from, to, latDegreeDigits, 'S');
+    }
+
+    /**
+     * converts a DMS longitude to seconds
+     *
+     * @param rawCoord : DDDMMSSh, e.g. 0793000W
+     * @return the longitude in seconds, negative if west
+     */
+    public static long parseLongitude(CharSequence rawCoord)
+    {
+        return dms(null, rawCoord, 0, rawCoord.length(), longDegreeDigits, 'W');
+    }
+
+    /**
+     * converts a DMS longitude held in a buffer to seconds
+     *
+     * @param buffer : the buffer
+     * @param from : absolute index of the first char
+     * @param to : absolute index just past the last char
+     * @return the longitude in seconds, negative if west
+     */
+    public static long parseLongitude(ByteBuffer buffer, int from, int to)
+    {
+        return dms(buffer, null, from, to, longDegreeDigits, 'W');
+    }
+
+    /**
+     * appends a DMS latitude in log format, e.g. "38d 30m 0s North"
+     *
+     * @param sb : the builder to append to
+     * @param rawCoord : DDMMSSh
+     * @return sb
+     */
+    public static StringBuilder appendLatitude(StringBuilder sb, CharSequence rawCoord)
+    {
+        return appendDms(sb, null, rawCoord, 0, rawCoord.length(), latDegreeDigits, 'N', " North", " South");
+    }
+
+    /**
+     * appends a DMS latitude held in a buffer in log format
+     *
+     * @param sb : the builder to append to
+     * @param buffer : the buffer
+     * @param from : absolute index of the first char
+     * @param to : absolute index just past the last char
+     * @return sb
+     */
+    public static StringBuilder appendLatitude(StringBuilder sb, ByteBuffer buffer, int from, int to)
+    {
+        return appendDms(sb, buffer, null, from, to, latDegreeDigits, 'N', " North", " South");
+    }
+
+    /**
+     * appends a DMS longitude in log format, e.g. "79d 30m 0s West"
+     *
+     * @param sb : the builder to append to
+     * @param rawCoord : DDDMMSSh
+     * @return sb
+     */
+    public static StringBuilder appendLongitude(StringBuilder sb, CharSequence rawCoord)
+    {
+        return appendDms(sb, null, rawCoord, 0, rawCoord.length(), longDegreeDigits, 'W', " West", " East");
+    }
+
+    /**
+     * appends a DMS longitude held in a buffer in log format
+     *
+     * @param sb : the builder to append to
+     * @param buffer : the buffer
+     * @param from : absolute index of the first char
+     * @param to : absolute index just past the last char
+     * @return sb
+     */
+    public static StringBuilder appendLongitude(StringBuilder sb, ByteBuffer buffer, int from, int to)
+    {
+        return appendDms(sb, buffer, null, from, to, longDegreeDigits, 'W', " West", " East");
+    }
+
+    /**
+     * DMS to seconds. exactly one of buffer and chars is non-null
+     *
+     * @param negative : hemisphere letter that makes the result negative
+     */
+    private static long dms(ByteBuffer buffer, CharSequence chars, int from, int to, int degreeDigits, char negative)
+    {
+        // degrees, minutes, seconds and the hemisphere letter
+        if (to - from < degreeDigits + 5)
+        {
+            throw new NumberFormatException("coordinate is too short");
+        }
+
+        long secondsSum = number(buffer, chars, from, from + degreeDigits) * 3600;
+        secondsSum += number(buffer, chars, from + degreeDigits, from + degreeDigits + 2) * 60;
+        secondsSum += number(buffer, chars, from + degreeDigits + 2, from + degreeDigits + 4);
+
+        // negative if south / west
+        if (charAt(buffer, chars, from + degreeDigits + 4) == negative)
+        {
+            secondsSum *= -1;
+        }
+
+        return secondsSum;
+    }
+
+    /**
+     * DMS to log format. exactly one of buffer and chars is non-null
+     *
+     * @param positive : hemisphere letter that gets positiveName, any other gets negativeName
+     */
+    private static StringBuilder appendDms(StringBuilder sb, ByteBuffer buffer, CharSequence chars, int from, int to,
+        int degreeDigits, char positive, String positiveName, String negativeName)
+    {
+        if (to - from < degreeDigits + 5)
+        {
+            throw new NumberFormatException("coordinate is too short");
+        }
+
+        sb.append(number(buffer, chars, from, from + degreeDigits)).append("d ");
+        sb.append(number(buffer, chars, from + degreeDigits, from + degreeDigits + 2)).append("m ");
+        sb.append(number(buffer, chars, from + degreeDigits + 2, from + degreeDigits + 4)).append("s");
+
+        // hemisphere
+        sb.append(charAt(buffer, chars, from + degreeDigits + 4) == positive ? positiveName : negativeName);
+
+        return sb;
+    }
+
+    // ------------------------------ DECIMAL DEGREES --------------------------------------
+    /**
+     * converts a decimal degree coordinate to seconds
+     *
+     * @param rawCoord : e.g. -79.4819444
+     * @return the coordinate in seconds, rounded to the nearest second
+     */
+    public static long parseDecimal(CharSequence rawCoord)
+    {
+        return decimal(null, rawCoord, 0, rawCoord.length());
+    }
+
+    /**
+     * converts a decimal degree coordinate held in a buffer to seconds
+     *
+     * @param buffer : the buffer
+     * @param from : absolute index of the first char
+     * @param to : absolute index just past the last char
+     * @return the coordinate in seconds, rounded to the nearest second
+     */
+    public static long parseDecimal(ByteBuffer buffer, int from, int to)
+    {
+        return decimal(buffer, null, from, to);
+    }
+
+    /**
+     * decimal degrees to seconds, all in integer arithmetic. exactly one of buffer and chars
+     * is non-null
+     */
+    private static long decimal(ByteBuffer buffer, CharSequence chars, int from, int to)
+    {
+        int idx = from;
+
+        // sign
+        boolean negative = false;
+        if (idx < to && (charAt(buffer, chars, idx) == '-' || charAt(buffer, chars, idx) == '+'))
+        {
+            negative = (charAt(buffer, chars, idx) == '-');
+            idx++;
+        }
+
+        // whole degrees
+        long degrees = 0;
+        int digits = 0;
+        while (idx < to && charAt(buffer, chars, idx) != '.')
+        {
+            degrees = degrees * 10 + digit(buffer, chars, idx++);
+            digits++;
+        }
+
+        // fraction, kept as fraction / scale; digits past the 9th cannot change the second
+        long fraction = 0;
+        long scale = 1;
+        if (idx < to)
+        {
+            idx++;
+            while (idx < to)
+            {
+                int curr = digit(buffer, chars, idx++);
+                digits++;
+                if (scale < 1_000_000_000L)
+                {
+                    fraction = fraction * 10 + curr;
+                    scale *= 10;
+                }
+            }
+        }
+
+        if (digits == 0 || degrees > 360)
+        {
+            throw new NumberFormatException("not a decimal degree coordinate");
+        }
+
+        // nearest second, halves away from zero
+        long seconds = degrees * 3600 + (fraction * 3600 + scale / 2) / scale;
+
+        return negative ? -seconds : seconds;
+    }
+
+    // ---------------------------------- CHARS --------------------------------------------
+    /**
+     * unsigned decimal value of a run of digits
+     */
+    private static long number(ByteBuffer buffer, CharSequence chars, int from, int to)
+    {
+        long value = 0;
+        for (int idx = from; idx < to; idx++)
+        {
+            value = value * 10 + digit(buffer, chars, idx);
+        }
+
+        return value;
+    }
+
+    /**
+     * value of a single digit
+     */
+    private static int digit(ByteBuffer buffer, CharSequence chars, int idx)
+    {
+        char curr = charAt(buffer, chars, idx);
+        if (curr < '0' || curr > '9')
+        {
+            throw new NumberFormatException("unexpected '" + curr + "' in coordinate");
+        }
+
+        return curr - '0';
+    }
+
+    /**
+     * one char of the input, a buffer byte is a char in the database encoding
+     */
+    private static char charAt(ByteBuffer buffer, CharSequence chars, int idx)
+    {
+        if (buffer != null)
+        {
+            return (char)(buffer.get(idx) & 0xff);
+        }
+
+        return chars.charAt(idx);
+    }
+}
@@ -1,22 +1,29 @@
-import java.util.ArrayList;
-
 public class dataEntry implements Hashable<dataEntry> 
 {
     String key; // GIS feature name
-    ArrayList<Long> locations; // file offsets of matching records
+    offsetList locations; // file offsets of matching records
     
     /** 
      * Initialize a new nameEntry object with the given feature name
      * and a single file offset.
      */
-    public dataEntry(String name, Long offset)
+    public dataEntry(String name, long offset)
     {
         // update name 
         key = name;
         
-        // append offset arraylist
-        locations = new ArrayList<Long>();
-        locations.add(offset);
+        // offset list, starting with this offset
+        locations = new offsetList(offset);
+    }
+    
+    /** 
+     * Initialize a new nameEntry object with the given feature name
+     * and an existing offset list.
+     */
+    private dataEntry(String name, offsetList offsets)
+    {
+        key = name;
+        locations = offsets;
     }
     
     /** 
@@ -30,35 +37,31 @@ public class dataEntry implements Hashable<dataEntry>
     /** 
      * Return list of file offsets.
      */
-    public ArrayList<Long> locations() 
+    public offsetList locations() 
     {
         return this.locations;
     }
     
     /** 
-     * Append a file offset to the existing list.
+     * Append a file offset to the existing list, unless it is already there.
+     * Offsets arrive in increasing order, so the check is a single comparison.
      */
-    public boolean addLocation(Long offset) 
+    public boolean addLocation(long offset) 
     {
-        // no duplicates (secondary check basically)
-        if (locations.contains(offset))
-        {
-            return false;
-        }
-        
-        // attempts to add offset to locations
-        try
-        {
-            locations.add(offset);
-        }
-        // in event of failure, simply return false
-        catch(Exception e)
-        {
-            return false;
-        }
+        return locations.add(offset);
+    }
+    
+    /** 
+     * Return a new entry for the same name with a file offset appended,
+     * leaving this entry unchanged, or this entry if the offset is already
+     * there. For a name index shared with readers on other threads: the
+     * offsets are shared, not copied (see offsetList.withOffset()).
+     */
+    public dataEntry withLocation(long offset) 
+    {
+        offsetList offsets = locations.withOffset(offset);
         
-        // return true (procs if no exception was caught)
-        return true;
+        return (offsets == locations) ? this : new dataEntry(key, offsets);
     }
     
     /** Fowler/Noll/Vo hash function is mandatory for this assignment. 
@@ -0,0 +1,205 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * splits one pipe-delimited GIS record into its fields without creating any Strings
+ *
+ * tokenize() walks the record once and records where every field starts and ends. after
+ * that a field is read by position: compare it in place with fieldEquals(), or decode just
+ * that field with field(). a tokenizer is reused record after record, so once its position
+ * arrays have grown to the widest record seen, tokenizing allocates nothing
+ *
+ * records are bytes in the database encoding (one byte per char), so decoded text is
+ * ISO-8859-1. a tokenizer is not thread safe, each thread keeps its own
+ *
+ * @author mason gelletly
+ * @version 5.12.22
+ */
+public class fieldTokenizer
+{
+    // field delimiter within a GIS record
+    private static final byte delimiter = '|';
+
+    // GIS records have 20 fields (21 with the trailing delimiter)
+    private static final int defaultFields = 24;
+
+    // the record being read
+    private ByteBuffer source;
+
+    // absolute start and end (exclusive) of each field within source
+    private int[] starts = new int[defaultFields];
+    private int[] ends = new int[defaultFields];
+
+    // number of fields in the current record
+    private int count = 0;
+
+    /**
+     * tokenizes a record from its position to its limit
+     *
+     * @param record : the record, e.g. one returned by recordStore.record()
+     * @return the number of fields
+     */
+    public int tokenize(ByteBuffer record)
+    {
+        return tokenize(record, record.position(), record.limit());
+    }
+
+    /**
+     * tokenizes the record held in an absolute range of a buffer. the buffer's position and
+     * limit are left alone, so one buffer can hold many records
+     *
+     * @param buffer : buffer holding the record
+     * @param from : absolute index of the first byte of the record
+     * @param to : absolute index just past the last byte of the record
+     * @return the number of fields
+     */
+    public int tokenize(ByteBuffer buffer, int from, int to)
+    {
+        source = buffer;
+        count = 0;
+
+        int start = from;
+        for (int idx = from; idx < to; idx++)
+        {
+            if (buffer.get(idx) == delimiter)
+            {
+                add(start, idx);
+                start = idx + 1;
+            }
+        }
+
+        // last field runs to the end of the record
+        add(start, to);
+
+        return count;
+    }
+
+    /**
+     * records one field, growing the position arrays if the record is unusually wide
+     */
+    private void add(int start, int end)
+    {
+        if (count == starts.length)
+        {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    /**
+     * simple getter for the number of fields in the current record
+     *
+     * @return the number of fields
+     */
+    public int count()
+    {
+        return count;
+    }
+
+    /**
+     * absolute index of the first byte of a field
+     *
+     * @param index : zero based field number
+     * @return the start of the field
+     */
+    public int start(int index)
+    {
+        return starts[index];
+    }
+
+    /**
+     * number of bytes in a field
+     *
+     * @param index : zero based field number
+     * @return the length of the field, 0 if the record has fewer fields
+     */
+    public int length(int index)
+    {
+        if (index >= count)
+        {
+            return 0;
+        }
+
+        return ends[index] - starts[index];
+    }
+
+    /**
+     * simple getter for the buffer holding the current record, for reading a field in place
+     * by its start() and length()
+     *
+     * @return the record buffer
+     */
+    public ByteBuffer source()
+    {
+        return source;
+    }
+
+    /**
+     * appends a single field to a builder without decoding it into a String first
+     *
+     * @param sb : the builder to append to
+     * @param index : zero based field number
+     * @return sb
+     */
+    public StringBuilder appendField(StringBuilder sb, int index)
+    {
+        int length = length(index);
+        for (int idx = 0; idx < length; idx++)
+        {
+            sb.append((char)(source.get(starts[index] + idx) & 0xff));
+        }
+
+        return sb;
+    }
+
+    /**
+     * decodes a single field
+     *
+     * @param index : zero based field number
+     * @return the field text; the empty string if the record has fewer fields
+     */
+    public String field(int index)
+    {
+        int length = length(index);
+        if (length == 0)
+        {
+            return "";
+        }
+
+        byte[] bytes = new byte[length];
+        source.get(starts[index], bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * compares a single field to a String without decoding the field
+     *
+     * @param index : zero based field number
+     * @param value : the text to compare to
+     * @return true if the field holds exactly value
+     */
+    public boolean fieldEquals(int index, String value)
+    {
+        if (index >= count || length(index) != value.length())
+        {
+            return false;
+        }
+
+        // byte per char, same as the database encoding
+        int start = starts[index];
+        for (int idx = 0; idx < value.length(); idx++)
+        {
+            if (source.get(start + idx) != (byte)value.charAt(idx))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -1,5 +1,3 @@
-import java.util.ArrayList;
-
 /**
  * Data type to be used for insertion into prQuadTree. Behavior should allow for the holding of 
  * primary latitude, longitude information, as well as file offset
@@ -7,14 +5,14 @@ import java.util.ArrayList;
  * @author mason
  * @version 4.21.22
  */
-public class gisEntry implements Compare2D
+public class gisEntry implements Compare2D<gisEntry>
 {
     // coordinate fields
     public long xcoord;
     public long ycoord;
     
-    // field for offset arraylist
-    private ArrayList<Long> offsets;
+    // field for offset list
+    private offsetList offsets;
     
     /**
      * Constructor for the object. Takes in all needed information via
@@ -27,23 +25,35 @@ public class gisEntry implements Compare2D
      */
     public gisEntry(long paramLat, long paramLong, long paramOffset)
     {
-        // initialize array list
-        offsets = new ArrayList<Long>();
-        
-        // update offset lists     
-        offsets.add(paramOffset);
+        // initialize offset list with the first offset
+        offsets = new offsetList(paramOffset);
         
         // update coords
         xcoord = paramLong;
         ycoord = paramLat;
     }
     
+    /**
+     * copy constructor, the copy gets an offset list of its own
+     * 
+     * @param other : the entry to copy
+     */
+    public gisEntry(gisEntry other)
+    {
+        // copy of the offset list
+        offsets = new offsetList(other.offsets);
+        
+        // same coords
+        xcoord = other.xcoord;
+        ycoord = other.ycoord;
+    }
+    
     /**
      * simple getter method for offset value
      * 
      * @return offset field
      */
-    public ArrayList<Long> getOffsets()
+    public offsetList getOffsets()
     {
         return offsets;
     }
@@ -53,9 +63,9 @@ public class gisEntry implements Compare2D
      * 
      * @return beginning offset (indice 1)
      */
-    public Long getFirstOffset()
+    public long getFirstOffset()
     {
-        return offsets.get(0);
+        return offsets.first();
     }
     
     /**
@@ -63,7 +73,7 @@ public class gisEntry implements Compare2D
      * 
      * @param newOffset : new offset to be added
      */
-    public void addOffset(Long newOffset)
+    public void addOffset(long newOffset)
     {
         offsets.add(newOffset);
     }
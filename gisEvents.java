@@ -0,0 +1,163 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the GIS phases, so a slow run can be lined up against the
+ * GC, I/O and thread events of the same recording
+ *
+ *      gis.ImportChunk   : one block of an import file indexed (records, bytes, offset)
+ *      gis.Query         : one what_is, what_is_at, what_is_in or what_is_near command
+ *      gis.QuadtreeSplit : a full leaf split into an internal node, or an internal node
+ *                          built by the bulk loader
+ *      gis.TableRehash   : the name index grown and rehashed
+ *      gis.PoolEviction  : a record evicted from the buffer pool
+ *
+ * every event is disabled by default, so a normal run pays for no more than the check.
+ * they are turned on when the recording is started, without a rebuild, e.g.
+ *
+ *      java -XX:StartFlightRecording:settings=default.jfc,settings=gis.jfc,filename=run.jfr GIS ...
+ *
+ * with the gis.jfc next to the sources, or for a single event
+ *
+ *      jfr configure +gis.Query#enabled=true --output query.jfc
+ *
+ * @author mason gelletly
+ * @version 5.21.22
+ */
+public class gisEvents
+{
+    /**
+     * one chunk of an import file inserted into the name index and the quadtree
+     */
+    @Name("gis.ImportChunk")
+    @Label("Import Chunk")
+    @Category({ "GIS", "Import" })
+    @Description("A block of records from an import file indexed")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class importChunk extends Event
+    {
+        @Label("File")
+        public String file;
+
+        @Label("Records")
+        public int records;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+
+        @Label("Database Offset")
+        @Description("Offset of the chunk's first record in the database file")
+        public long offset;
+    }
+
+    /**
+     * one query command, from the start of the command to its last log line
+     */
+    @Name("gis.Query")
+    @Label("Query")
+    @Category({ "GIS", "Query" })
+    @Description("A query command of the command script")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class query extends Event
+    {
+        @Label("Command Number")
+        public int commandNumber;
+
+        @Label("Command")
+        public String command;
+
+        @Label("Arguments")
+        public String arguments;
+
+        @Label("Nodes Visited")
+        @Description("Quadtree nodes the command opened")
+        public long nodesVisited;
+
+        @Label("Results")
+        @Description("Records the command logged")
+        public int results;
+    }
+
+    /**
+     * a quadtree leaf turned into an internal node
+     */
+    @Name("gis.QuadtreeSplit")
+    @Label("Quadtree Split")
+    @Category({ "GIS", "Quadtree" })
+    @Description("A quadtree leaf split into four quadrants")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class quadtreeSplit extends Event
+    {
+        @Label("Elements")
+        @Description("Elements moved into the quadrants")
+        public int elements;
+
+        @Label("Bulk Load")
+        @Description("True if the node was built by the bulk loader rather than a full bucket")
+        public boolean bulk;
+
+        @Label("Min X")
+        public long xLo;
+
+        @Label("Max X")
+        public long xHi;
+
+        @Label("Min Y")
+        public long yLo;
+
+        @Label("Max Y")
+        public long yHi;
+    }
+
+    /**
+     * the name index moved into a larger table
+     */
+    @Name("gis.TableRehash")
+    @Label("Name Index Rehash")
+    @Category({ "GIS", "Name Index" })
+    @Description("The name index doubled, lasting until every element has been moved into the new table")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class tableRehash extends Event
+    {
+        @Label("Old Slots")
+        public int oldSlots;
+
+        @Label("New Slots")
+        public int newSlots;
+
+        @Label("Elements")
+        public int elements;
+    }
+
+    /**
+     * a record pushed out of the buffer pool
+     */
+    @Name("gis.PoolEviction")
+    @Label("Pool Eviction")
+    @Category({ "GIS", "Buffer Pool" })
+    @Description("A record evicted from the buffer pool to make room")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class poolEviction extends Event
+    {
+        @Label("Policy")
+        public String policy;
+
+        @Label("Evicted Offset")
+        public long evicted;
+
+        @Label("Inserted Offset")
+        public long inserted;
+    }
+}
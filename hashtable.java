@@ -1,3 +1,8 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+
 /**
  * hash table intended to help with the design implementation of a GIS information manipulation
  * project
@@ -23,6 +28,12 @@
 * The size of the ArrayList is doubled when the load factor exceeds the
 * load limit (defaulting to 0.7, but configurable via the class constructor).
 *
+* The doubling is incremental: the old table is kept next to the new one and
+* every insert moves a few of its slots across, so no single insert pays for
+* moving the whole table. While the move is in progress, lookups check the
+* element's home slot in both tables. The step is sized from the load limit so
+* the old table is always empty before the next doubling is due.
+*
 * Elements inserted to the table must implement the Hashable interface:
 * public int Hash();
 *
@@ -39,6 +50,12 @@ public class hashtable<T extends Hashable<T> >
     
     // an array list, of linked lists... alrighty
     
+    // INCREMENTAL REHASHING
+    private ArrayList< LinkedList<T> > oldTable = null; // table being moved into table, null when none
+    private int migrated = 0; // old slots moved so far, every slot below this is empty
+    private int migrateStep; // old slots moved per insert
+    private static final int minMigrateStep = 2; // fewest old slots moved per insert
+    
     /** 
      * Constructs an empty hash table with the following properties:
      * Pre:
@@ -71,6 +88,10 @@ public class hashtable<T extends Hashable<T> >
             loadLimit = ldLimit;
         }       
         
+        // a doubling is due after another size * ldLimit inserts, by then all size old
+        // slots must have been moved
+        migrateStep = Math.max(minMigrateStep, (int)Math.ceil(1 / loadLimit) + 1);
+        
         // fill table with linked lists (empty)
         if (table.isEmpty())
         {
@@ -100,62 +121,34 @@ public class hashtable<T extends Hashable<T> >
      * true if elem has been inserted
      * 
      */
-    @SuppressWarnings("unchecked")
     public boolean insert(T elem)
     {
-        // CASTING AND FURTHER LOGIC
-        //
-        // hashing very big
-        dataEntry cast = (dataEntry)elem;
+        // move a few more slots of the old table across, if a doubling is in progress
+        this.migrate(migrateStep);
         
-        // home slot
-        int home = cast.Hash(); // hash value != home slot      
-        home = home % table.size();
- 
-        // insertion for nonempty list
-        if (!table.get(home).isEmpty())
+        // DUPLICATE CHECK, in the home slot of both tables
+        T stored = this.find(elem);
+        if (stored != null)
         {
-            // find could potentially work            
-            // DUPLICATE CHECK
-            for (Integer idx = 0; idx < table.get(home).size(); idx++)
-            {
-                // update current element of list being looked for
-                // we are checking for equality using equals()
-                T currElem = table.get(home).get(idx);
-                
-                // equals assertment
-                if (currElem.equals(elem))
-                {
-                    // following code TEST
-                    dataEntry xEntry = (dataEntry)elem;
-
-                    T addThisElem = table.get(home).get(idx);
-                    dataEntry addThisEntry = (dataEntry)addThisElem;
-                    
-                    addThisEntry.addLocation(xEntry.locations.get(0));
-
-                    // false return due to duplicate find DOESNT REALLY MATTER
-                    return false;
-                }
-                else
-                {
-                    // updating locations
-                    // firstly, cast the T elem 
-                    dataEntry xEntry = (dataEntry)elem;
-                    xEntry.addLocation(xEntry.locations.get(0));
-                }
-                
-            }
+            // merge the new file offset into the stored element
+            dataEntry xEntry = (dataEntry)elem;
+            dataEntry addThisEntry = (dataEntry)stored;
+            
+            addThisEntry.addLocation(xEntry.locations.first());
+            
+            // false return due to duplicate find DOESNT REALLY MATTER
+            return false;
         }
         
-        // actual insertion (both cases)
-        table.get(home).add(elem);  
+        // actual insertion, always into the current table
+        LinkedList<T> homeChain = chain(table, slotOf(elem, table.size()));
+        homeChain.add(elem);  
         numElements++;
         
         // max element calculation
-        if (table.get(home).size() - 1 > maxElements)
+        if (homeChain.size() - 1 > maxElements)
         {
-            maxElements = table.get(home).size() - 1;
+            maxElements = homeChain.size() - 1;
         }
         
         // ---------------------------------------------
@@ -168,47 +161,100 @@ public class hashtable<T extends Hashable<T> >
         //
         if (loadFactor > loadLimit)
         {
-            // rehashed with size doubled
-            ArrayList< LinkedList<T> > rehash = new ArrayList< LinkedList<T> >(table.size() * 2);
+            // the step keeps up with the inserts, so the last doubling is already done by
+            // now; make sure of it before starting another
+            this.migrate(Integer.MAX_VALUE);
             
-            // fill table with linked lists (empty)
-            if (rehash.isEmpty())
-            {
-                for (int i = 0; i < table.size() * 2; i++)
-                {
-                    LinkedList<T> beginning = new LinkedList<T>();
-                    rehash.add(i, beginning);
-                }
-            }
+            // rehashed with size doubled. chains are created as elements arrive, so the new
+            // table costs one array of empty slots and nothing is moved yet
+            oldTable = table;
+            migrated = 0;
+            table = new ArrayList< LinkedList<T> >(Collections.nCopies(oldTable.size() * 2, (LinkedList<T>)null));
+        }
+        
+        // will always be true at this point
+        return true;
+    }
+    
+    /**
+     * moves up to count slots of the old table into the current one, and drops the old
+     * table once it is empty
+     * 
+     * @param count : number of old slots to move
+     */
+    private void migrate(int count)
+    {
+        // no doubling in progress
+        if (oldTable == null)
+        {
+            return;
+        }
+        
+        // iterate through the next old slots and insert
+        for (int moved = 0; moved < count && migrated < oldTable.size(); moved++, migrated++)
+        {
+            LinkedList<T> currList = oldTable.get(migrated);
             
-            // iterate through old hashmap and insert
-            for (int idx = 0; idx < table.size(); idx++)
+            // if linked list is NOT empty
+            if (currList != null && !currList.isEmpty())
             {
-                // if linked list is NOT empty
-                if (!table.get(idx).isEmpty())
-                {           
-                    // current list being copied
-                    LinkedList<T> currList = table.get(idx);
+                // walk the chain once, get(jdx) on a linked list would walk it every time
+                for (T currElem : currList)
+                {
+                    // add old stuff to new list
+                    LinkedList<T> fresh = chain(table, slotOf(currElem, table.size()));
+                    fresh.add(currElem);
                     
-                    // iterate through linked list and add to rehash
-                    for (int jdx = 0; jdx < currList.size(); jdx++)
+                    // max element calculation
+                    if (fresh.size() - 1 > maxElements)
                     {
-                        // current T element being considered
-                        dataEntry currEntry = (dataEntry)currList.get(jdx);
-                        
-                        // add old stuff to new list
-                        LinkedList<T> fresh = rehash.get(currEntry.Hash() % (table.size() * 2));
-                        fresh.add((T)currEntry);
+                        maxElements = fresh.size() - 1;
                     }
                 }
             }
             
-            // update table 
-            table = rehash;
+            // the old slot is done with
+            oldTable.set(migrated, null);
         }
         
-        // will always be true at this point
-        return true;
+        // update table 
+        if (migrated == oldTable.size())
+        {
+            oldTable = null;
+            migrated = 0;
+        }
+    }
+    
+    /**
+     * home slot of an element in a table of the given size
+     * 
+     * @param elem : the element
+     * @param size : number of slots in the table
+     * @return the slot
+     */
+    private int slotOf(T elem, int size)
+    {
+        // hash value != home slot
+        return Math.floorMod(elem.Hash(), size);
+    }
+    
+    /**
+     * the chain of a slot, created if the slot is still empty
+     * 
+     * @param slots : the table
+     * @param slot : the slot
+     * @return the chain
+     */
+    private LinkedList<T> chain(ArrayList< LinkedList<T> > slots, int slot)
+    {
+        LinkedList<T> curr = slots.get(slot);
+        if (curr == null)
+        {
+            curr = new LinkedList<T>();
+            slots.set(slot, curr);
+        }
+        
+        return curr;
     }
     
     /** Searches the table for an element that matches elem (according to
@@ -221,23 +267,44 @@ public class hashtable<T extends Hashable<T> >
      */
     public T find(T elem) 
     {
+        // home slot of the current table
+        T match = this.search(table.get(slotOf(elem, table.size())), elem);
         
-        // iterate through table 
-        for (int idx = 0; idx < table.size(); idx++)
+        // during a doubling the element may still be in the old table, in a slot not yet moved
+        if (match == null && oldTable != null)
         {
-            // iterate through linked list
-            for (int jdx = 0; jdx < table.get(idx).size(); jdx++)
+            int oldHome = slotOf(elem, oldTable.size());
+            if (oldHome >= migrated)
             {
-                // check for match //MAYBE ITERATE THROUGH CHAIN
-                // null check
-                if (table.get(idx).isEmpty())
-                {
-                    continue;
-                }
-                else if (table.get(idx).get(jdx).equals(elem))
-                {
-                    return table.get(idx).get(jdx);
-                } 
+                match = this.search(oldTable.get(oldHome), elem);
+            }
+        }
+        
+        // finale return!
+        return match;
+    }
+    
+    /**
+     * searches one chain for an element that matches elem
+     * 
+     * @param chain : the chain, may be null for an empty slot
+     * @param elem : the element looked for
+     * @return reference to the matching element; null if no match is found
+     */
+    private T search(LinkedList<T> chain, T elem)
+    {
+        // empty slot
+        if (chain == null)
+        {
+            return null;
+        }
+        
+        // iterate through linked list
+        for (T curr : chain)
+        {
+            if (curr.equals(elem))
+            {
+                return curr;
             }
         }
         
@@ -261,6 +328,9 @@ public class hashtable<T extends Hashable<T> >
      */
     public String display() throws IOException 
     {
+        // the display walks every slot anyway, so finish any doubling in progress first
+        this.migrate(Integer.MAX_VALUE);
+        
         StringBuilder sb = new StringBuilder();
         
         sb.append("Number of elements: " + numElements + "\n");
@@ -0,0 +1,516 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * staged pipeline behind the import command
+ *
+ *      reader  : reads the GIS file in blocks of raw bytes, cut after the last line
+ *                terminator, and hands each block to the parsers
+ *      parsers : worker pool, splits a block into lines, encodes each line for the database
+ *                and tokenizes it in place to pull out the name, state and primary coordinates
+ *      writer  : takes parsed chunks back in file order, assigns database offsets and appends
+ *                each chunk to the database with a single write
+ *      indexer : the calling thread, inserts each written chunk into the name index and
+ *                gathers its located entries for the quadtree, which takes them all with
+ *                one bulkLoad() once the last chunk is in
+ *
+ * the stages are connected by bounded queues, so a slow stage holds the ones in front of it
+ * back instead of letting parsed chunks pile up in memory. the writer is the only stage that
+ * touches the database and it takes chunks strictly in order, so the database bytes and
+ * offsets are exactly what a line by line import produces
+ *
+ * @author mason gelletly
+ * @version 5.9.22
+ */
+public class importPipeline
+{
+    // bytes read per block (a block grows if a single line is longer)
+    private static final int blockSize = 1 << 19;
+
+    // written chunks waiting for the indexer
+    private static final int indexQueueSize = 4;
+
+    // GIS record fields used by the indexes
+    private static final int nameField = 1;
+    private static final int stateField = 3;
+    private static final int latField = 7;
+    private static final int longField = 8;
+    private static final int decLatField = 9;
+    private static final int decLongField = 10;
+
+    /**
+     * a run of consecutive lines of the import file, parsed from one block
+     */
+    private static class chunk
+    {
+        byte[] bytes = new byte[0]; // encoded lines, each followed by '\n'
+        int length = 0; // bytes in use
+        int count = 0; // number of lines
+        int[] starts; // start of each line within bytes
+        String[] keys; // name index key of each line
+        long[] lats; // primary latitude in seconds
+        long[] longs; // primary longitude in seconds
+        boolean[] located; // false if the line has no usable primary coordinate
+        long base; // database offset of bytes[0], assigned by the writer
+
+        /**
+         * constructor, sizes the per line arrays
+         */
+        chunk(int lines)
+        {
+            starts = new int[lines];
+            keys = new String[lines];
+            lats = new long[lines];
+            longs = new long[lines];
+            located = new boolean[lines];
+        }
+    }
+
+    // marks the end of the stream between stages
+    private static final chunk endOfInput = new chunk(0);
+
+    // import targets
+    private RandomAccessFile database;
+    private nameIndex<dataEntry> table;
+    private prQuadTree<gisEntry> quadtree;
+
+    // number of parser threads
+    private int workers;
+
+    /**
+     * constructor for the pipeline
+     *
+     * @param database : the GIS database, records are appended to it
+     * @param table : the name index
+     * @param quadtree : the coordinate index
+     */
+    public importPipeline(RandomAccessFile database, nameIndex<dataEntry> table, prQuadTree<gisEntry> quadtree)
+    {
+        this.database = database;
+        this.table = table;
+        this.quadtree = quadtree;
+        this.workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    /**
+     * imports every record of the given GIS file (the first line is the column header)
+     *
+     * @param appendFile : the file to import
+     * @return the number of records imported
+     * @throws Exception if reading, parsing, writing or indexing fails
+     */
+    public long run(File appendFile) throws Exception
+    {
+        BlockingQueue<Future<chunk>> parsed = new ArrayBlockingQueue<Future<chunk>>(workers * 2);
+        BlockingQueue<chunk> written = new ArrayBlockingQueue<chunk>(indexQueueSize);
+
+        ExecutorService parsers = Executors.newFixedThreadPool(workers);
+        ExecutorService stages = Executors.newFixedThreadPool(2);
+
+        try
+        {
+            // new records go on the end of the database
+            database.seek(database.length());
+
+            Future<Void> reading = stages.submit(() -> read(appendFile, parsers, parsed));
+            Future<Void> writing = stages.submit(() -> write(parsed, written));
+
+            // index on this thread until the writer signals the end
+            long records = index(written, appendFile.getName());
+
+            // surface a failure in either of the other stages. the writer is checked first:
+            // if it failed, the reader may still be blocked on a full queue until shutdown
+            writing.get();
+            reading.get();
+
+            return records;
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Exception)
+            {
+                throw (Exception)e.getCause();
+            }
+            throw e;
+        }
+        finally
+        {
+            stages.shutdownNow();
+            parsers.shutdownNow();
+        }
+    }
+
+    /**
+     * READER STAGE. reads the file in blocks of whole lines and submits each to the parser
+     * pool, queueing the pending results in file order. the bytes are not looked at beyond
+     * finding the last line terminator of each block
+     */
+    private Void read(File appendFile, ExecutorService parsers, BlockingQueue<Future<chunk>> parsed)
+        throws IOException, InterruptedException
+    {
+        // the end marker is always sent unless the pipeline is being torn down
+        boolean interrupted = false;
+
+        try (FileInputStream in = new FileInputStream(appendFile))
+        {
+            byte[] block = new byte[blockSize];
+            int filled = 0;
+
+            // the first line of the file is the column header
+            boolean header = true;
+
+            while (true)
+            {
+                int read = in.read(block, filled, block.length - filled);
+                if (read < 0)
+                {
+                    break;
+                }
+                filled += read;
+                if (filled < block.length)
+                {
+                    continue;
+                }
+
+                // full block, cut it after its last line terminator
+                int cut = filled;
+                while (cut > 0 && block[cut - 1] != '\n' && block[cut - 1] != '\r')
+                {
+                    cut--;
+                }
+
+                // a single line longer than the block, make room for the rest of it
+                if (cut == 0)
+                {
+                    block = Arrays.copyOf(block, block.length * 2);
+                    continue;
+                }
+
+                // the partial last line starts the next block
+                byte[] next = new byte[Math.max(blockSize, filled - cut + 1)];
+                System.arraycopy(block, cut, next, 0, filled - cut);
+
+                byte[] batch = block;
+                int length = cut;
+                boolean skipHeader = header;
+                parsed.put(parsers.submit(() -> parse(batch, length, skipHeader)));
+
+                block = next;
+                filled -= cut;
+                header = false;
+            }
+
+            // last block, its final line may have no terminator
+            if (filled > 0)
+            {
+                byte[] batch = block;
+                int length = filled;
+                boolean skipHeader = header;
+                parsed.put(parsers.submit(() -> parse(batch, length, skipHeader)));
+            }
+        }
+        catch (InterruptedException e)
+        {
+            interrupted = true;
+            throw e;
+        }
+        finally
+        {
+            if (!interrupted)
+            {
+                parsed.put(CompletableFuture.completedFuture(endOfInput));
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * PARSER STAGE. splits a block into lines, encodes each line the way writeBytes() would
+     * and reads the fields the indexes need straight out of the encoded bytes
+     *
+     * lines end at '\n' or '\r' and empty lines carry no record, so "\r\n" endings and blank
+     * lines come out exactly as readLine() used to give them. pure ASCII lines (nearly all of
+     * them) are copied byte for byte; a line with any other byte is decoded with the default
+     * charset, as the old reader did, and written one byte per char
+     *
+     * @param block : raw bytes of the file
+     * @param length : bytes of block in use
+     * @param skipHeader : true for the first block, whose first line is the column header
+     */
+    private static chunk parse(byte[] block, int length, boolean skipHeader)
+    {
+        int pos = 0;
+
+        // drop the column header (the first line, even if it is empty)
+        if (skipHeader)
+        {
+            while (pos < length && block[pos] != '\n' && block[pos] != '\r')
+            {
+                pos++;
+            }
+            pos++;
+        }
+
+        // at most one line per terminator, plus an unterminated last line
+        int lines = 1;
+        for (int idx = pos; idx < length; idx++)
+        {
+            if (block[idx] == '\n' || block[idx] == '\r')
+            {
+                lines++;
+            }
+        }
+
+        // encoded lines are never longer than the raw ones, so the output needs no growing
+        chunk result = new chunk(lines);
+        result.bytes = new byte[Math.max(0, length - pos) + 1];
+        ByteBuffer encoded = ByteBuffer.wrap(result.bytes);
+        fieldTokenizer fields = new fieldTokenizer();
+
+        int count = 0;
+        while (pos < length)
+        {
+            // find the end of the line
+            int end = pos;
+            boolean ascii = true;
+            while (end < length && block[end] != '\n' && block[end] != '\r')
+            {
+                ascii &= (block[end] >= 0);
+                end++;
+            }
+
+            // blank lines carry no record
+            if (end == pos)
+            {
+                pos++;
+                continue;
+            }
+
+            // encode the line, one byte per char as RandomAccessFile.writeBytes() does
+            int start = result.length;
+            String decoded = null;
+            if (ascii)
+            {
+                System.arraycopy(block, pos, result.bytes, start, end - pos);
+                result.length += end - pos;
+            }
+            else
+            {
+                decoded = new String(block, pos, end - pos, Charset.defaultCharset());
+                for (int idx = 0; idx < decoded.length(); idx++)
+                {
+                    result.bytes[result.length++] = (byte)decoded.charAt(idx);
+                }
+            }
+            result.starts[count] = start;
+
+            // pull out the indexed fields
+            fields.tokenize(encoded, start, result.length);
+            result.keys[count] = key(fields, decoded, start);
+
+            // primary coordinate, read in place
+            result.located[count] = locate(fields, encoded, result, count);
+
+            result.bytes[result.length++] = '\n';
+            count++;
+            pos = end + 1;
+        }
+
+        result.count = count;
+        return result;
+    }
+
+    /**
+     * reads the primary coordinate of a tokenized line into the chunk. the DMS columns are
+     * used when they parse; a record whose DMS columns are missing or malformed falls back to
+     * its decimal degree columns. records with neither (GIS marks an unknown decimal
+     * coordinate as 0, 0) are indexed by name only
+     *
+     * @return true if the line has a usable coordinate
+     */
+    private static boolean locate(fieldTokenizer fields, ByteBuffer encoded, chunk result, int line)
+    {
+        try
+        {
+            result.lats[line] = coordinateCodec.parseLatitude(encoded, fields.start(latField),
+                fields.start(latField) + fields.length(latField));
+            result.longs[line] = coordinateCodec.parseLongitude(encoded, fields.start(longField),
+                fields.start(longField) + fields.length(longField));
+            return true;
+        }
+        catch (NumberFormatException e)
+        {
+            // fall through to the decimal columns
+        }
+
+        try
+        {
+            long lat = coordinateCodec.parseDecimal(encoded, fields.start(decLatField),
+                fields.start(decLatField) + fields.length(decLatField));
+            long lon = coordinateCodec.parseDecimal(encoded, fields.start(decLongField),
+                fields.start(decLongField) + fields.length(decLongField));
+            if (lat == 0 && lon == 0)
+            {
+                return false;
+            }
+
+            result.lats[line] = lat;
+            result.longs[line] = lon;
+            return true;
+        }
+        catch (NumberFormatException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * builds the name index key (name:state) of a tokenized line. a decoded line keeps the
+     * original chars of its key; the encoded field positions line up with its chars
+     *
+     * @param fields : the tokenized, encoded line
+     * @param decoded : the decoded line; null for an ASCII line
+     * @param start : position of the line within the encoded bytes
+     */
+    private static String key(fieldTokenizer fields, String decoded, int start)
+    {
+        if (decoded == null)
+        {
+            return fields.field(nameField) + ":" + fields.field(stateField);
+        }
+
+        return text(fields, decoded, start, nameField) + ":" + text(fields, decoded, start, stateField);
+    }
+
+    /**
+     * a field of a decoded line, located by its encoded position
+     */
+    private static String text(fieldTokenizer fields, String decoded, int start, int index)
+    {
+        if (fields.length(index) == 0)
+        {
+            return "";
+        }
+
+        int from = fields.start(index) - start;
+        return decoded.substring(from, from + fields.length(index));
+    }
+
+    /**
+     * WRITER STAGE. waits for each chunk in file order, gives it its database offset and
+     * appends it to the database
+     */
+    private Void write(BlockingQueue<Future<chunk>> parsed, BlockingQueue<chunk> written)
+        throws Exception
+    {
+        // the end marker is always sent unless the pipeline is being torn down
+        boolean interrupted = false;
+
+        try
+        {
+            long offset = database.getFilePointer();
+            while (true)
+            {
+                chunk next = parsed.take().get();
+                if (next == endOfInput)
+                {
+                    break;
+                }
+
+                next.base = offset;
+                database.write(next.bytes, 0, next.length);
+                offset += next.length;
+
+                written.put(next);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            interrupted = true;
+            throw e;
+        }
+        finally
+        {
+            if (!interrupted)
+            {
+                written.put(endOfInput);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * INDEXER STAGE. inserts every record of every written chunk into the name index and
+     * the quadtree
+     *
+     * @param fileName : name of the import file, for the import chunk events
+     * @return the number of records indexed
+     */
+    private long index(BlockingQueue<chunk> written, String fileName) throws Exception
+    {
+        long records = 0;
+
+        // the quadtree takes the whole import in one go once every entry is known: an empty
+        // tree is bulk built, and a tree with snapshot reads publishes the import as one write
+        ArrayList<gisEntry> located = new ArrayList<gisEntry>();
+
+        while (true)
+        {
+            chunk next = written.take();
+            if (next == endOfInput)
+            {
+                break;
+            }
+
+            gisEvents.importChunk event = new gisEvents.importChunk();
+            event.begin();
+
+            for (int idx = 0; idx < next.count; idx++)
+            {
+                long offset = next.base + next.starts[idx];
+
+                // name index insert, or a new version of the entry already holding this name
+                // with the offset added, so readers of the index never see an entry change
+                table.merge(new dataEntry(next.keys[idx], offset),
+                    (stored, added) -> stored.withLocation(added.locations().first()));
+
+                // quadtree insert
+                if (next.located[idx])
+                {
+                    located.add(new gisEntry(next.lats[idx], next.longs[idx], offset));
+                }
+            }
+
+            records += next.count;
+
+            if (event.shouldCommit())
+            {
+                event.file = fileName;
+                event.records = next.count;
+                event.bytes = next.length;
+                event.offset = next.base;
+                event.commit();
+            }
+        }
+
+        // same tree as inserting in file order
+        quadtree.bulkLoad(located);
+
+        return records;
+    }
+}
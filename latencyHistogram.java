@@ -0,0 +1,147 @@
+/**
+ * fixed memory histogram of latencies, in the style of HdrHistogram
+ *
+ * values (nanoseconds) are counted in log-linear buckets: every power of two range is split
+ * into 32 equal sub-buckets, so any recorded value is known to within about 3% however large
+ * it is. recording is a few shifts and an array increment, no allocation and no search, so
+ * it is cheap enough to leave on for every command
+ *
+ * percentiles are reported as the top of the bucket the percentile falls in, never lower
+ * than the true value. count, total, min and max are exact
+ *
+ * a histogram is recorded by one thread at a time
+ *
+ * @author mason gelletly
+ * @version 5.20.22
+ */
+public class latencyHistogram
+{
+    // sub-buckets per power of two range
+    private static final int subBits = 5;
+    private static final int subCount = 1 << subBits;
+
+    // values below twice subCount get a bucket each, then 32 buckets per power of two up to 2^63
+    private static final int bucketCount = 2 * subCount + (63 - subBits - 1) * subCount;
+
+    private long[] counts = new long[bucketCount];
+    private long count = 0;
+    private long total = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    /**
+     * records one value
+     *
+     * @param value : the latency in nanoseconds, negative values count as 0
+     */
+    public void record(long value)
+    {
+        long curr = Math.max(0, value);
+        counts[bucket(curr)]++;
+        count++;
+        total += curr;
+        min = Math.min(min, curr);
+        max = Math.max(max, curr);
+    }
+
+    /**
+     * bucket of a value
+     */
+    private static int bucket(long value)
+    {
+        if (value < 2 * subCount)
+        {
+            return (int)value;
+        }
+
+        // top subBits + 1 bits of the value pick the sub-bucket within its power of two
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - subBits;
+        return 2 * subCount + (msb - subBits - 1) * subCount + (int)((value >>> shift) - subCount);
+    }
+
+    /**
+     * largest value that falls in a bucket
+     */
+    private static long highestIn(int bucket)
+    {
+        if (bucket < 2 * subCount)
+        {
+            return bucket;
+        }
+
+        int range = (bucket - 2 * subCount) / subCount;
+        int shift = range + 1;
+        long sub = subCount + (bucket - 2 * subCount) % subCount;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * value at a percentile
+     *
+     * @param percentile : 0 to 100
+     * @return the latency in nanoseconds at or below which percentile percent of the values
+     * fall (to bucket precision), 0 if nothing was recorded
+     */
+    public long percentile(double percentile)
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+
+        // nearest rank
+        long rank = Math.max(1, (long)Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int idx = 0; idx < bucketCount; idx++)
+        {
+            seen += counts[idx];
+            if (seen >= rank)
+            {
+                return Math.min(max, highestIn(idx));
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * simple getter for the number of values recorded
+     *
+     * @return the count
+     */
+    public long count()
+    {
+        return count;
+    }
+
+    /**
+     * simple getter for the sum of the values recorded
+     *
+     * @return the total in nanoseconds
+     */
+    public long total()
+    {
+        return total;
+    }
+
+    /**
+     * simple getter for the smallest value recorded
+     *
+     * @return the minimum in nanoseconds, 0 if nothing was recorded
+     */
+    public long min()
+    {
+        return (count == 0) ? 0 : min;
+    }
+
+    /**
+     * simple getter for the largest value recorded
+     *
+     * @return the maximum in nanoseconds
+     */
+    public long max()
+    {
+        return max;
+    }
+}
@@ -0,0 +1,335 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * buffered sink for the GIS log file, in place of a RandomAccessFile write per line
+ *
+ * writeBytes() behaves exactly like RandomAccessFile.writeBytes(): every char is written as
+ * its low byte. the bytes go straight into a large buffer, and the file is only written when
+ * the buffer fills, so a script of 100k commands costs a few hundred writes instead of
+ * several hundred thousand
+ *
+ * in async mode a full buffer is handed to a background thread through a bounded ring of
+ * buffers and the commands carry on filling the next one. if the disk falls behind, the ring
+ * runs out of free buffers and writeBytes() waits for one. a write error on the background
+ * thread is thrown from the next writeBytes() or flush()
+ *
+ * flush() forces everything written so far to the file, close() flushes and stops the
+ * background thread. a writer is used by one thread at a time, apart from close()
+ *
+ * a writer made without a file keeps everything in memory, growing as needed, until
+ * writeTo() hands it on to another writer. commands that run in parallel log into one of
+ * these each, and the results are written to the real log in command order
+ *
+ * @author mason gelletly
+ * @version 5.17.22
+ */
+public class logWriter
+{
+    // default bytes per buffer (1 MB) and buffers in the async ring
+    public static final int defaultBufferSize = 1 << 20;
+    private static final int ringSize = 4;
+
+    // channel of the log file, null for a memory writer
+    private FileChannel channel;
+
+    // buffer currently being filled
+    private ByteBuffer current;
+
+    // ASYNC
+    private ArrayBlockingQueue<ByteBuffer> full; // waiting to be written, in order
+    private ArrayBlockingQueue<ByteBuffer> free; // written, ready to be filled again
+    private Thread flusher;
+    private long submitted = 0; // buffers handed to the flusher
+    private long written = 0; // buffers the flusher has written, guarded by this
+    private volatile IOException failure;
+
+    private boolean closed = false;
+
+    // bytes accepted by writeBytes()
+    private long bytes = 0;
+
+    /**
+     * constructor for a memory writer, nothing is written anywhere until writeTo()
+     *
+     * @param initialSize : bytes to start with, the buffer doubles whenever it fills
+     */
+    public logWriter(int initialSize)
+    {
+        this.current = ByteBuffer.allocate(Math.max(64, initialSize));
+    }
+
+    /**
+     * constructor for a synchronous writer, the file is written whenever the buffer fills
+     *
+     * @param file : the log file, written from its current position
+     */
+    public logWriter(RandomAccessFile file)
+    {
+        this(file, defaultBufferSize, false);
+    }
+
+    /**
+     * constructor for the writer
+     *
+     * @param file : the log file, written from its current position
+     * @param bufferSize : bytes per buffer
+     * @param async : true to write full buffers on a background thread
+     */
+    public logWriter(RandomAccessFile file, int bufferSize, boolean async)
+    {
+        this.channel = file.getChannel();
+        this.current = ByteBuffer.allocate(Math.max(1024, bufferSize));
+
+        if (async)
+        {
+            full = new ArrayBlockingQueue<ByteBuffer>(ringSize);
+            free = new ArrayBlockingQueue<ByteBuffer>(ringSize);
+            for (int idx = 1; idx < ringSize; idx++)
+            {
+                free.add(ByteBuffer.allocate(current.capacity()));
+            }
+
+            flusher = new Thread(this::drain, "log flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    /**
+     * writes a string as a sequence of bytes, one per char, like RandomAccessFile.writeBytes()
+     *
+     * @param s : the text to write
+     * @throws IOException if the log file could not be written
+     */
+    @SuppressWarnings("deprecation")
+    public void writeBytes(String s) throws IOException
+    {
+        if (failure != null)
+        {
+            throw failure;
+        }
+        bytes += s.length();
+
+        int from = 0;
+        while (from < s.length())
+        {
+            if (!current.hasRemaining())
+            {
+                makeRoom();
+            }
+
+            // the low byte of each char, exactly what RandomAccessFile.writeBytes() keeps
+            int length = Math.min(s.length() - from, current.remaining());
+            s.getBytes(from, from + length, current.array(), current.position());
+            current.position(current.position() + length);
+            from += length;
+        }
+    }
+
+    /**
+     * appends everything written to this memory writer to another writer, and empties this one
+     *
+     * @param target : the writer to append to
+     * @throws IOException if the target could not be written
+     */
+    public void writeTo(logWriter target) throws IOException
+    {
+        byte[] source = current.array();
+        int length = current.position();
+        target.bytes += length;
+
+        int from = 0;
+        while (from < length)
+        {
+            if (!target.current.hasRemaining())
+            {
+                target.makeRoom();
+            }
+
+            int chunk = Math.min(length - from, target.current.remaining());
+            target.current.put(source, from, chunk);
+            from += chunk;
+        }
+
+        current.clear();
+    }
+
+    /**
+     * writes everything buffered so far to the log file
+     *
+     * @throws IOException if the log file could not be written
+     */
+    public void flush() throws IOException
+    {
+        // a memory writer has nowhere to flush to
+        if (channel == null)
+        {
+            return;
+        }
+
+        if (current.position() > 0)
+        {
+            handOff();
+        }
+
+        // wait for the flusher to catch up
+        if (flusher != null)
+        {
+            synchronized (this)
+            {
+                while (written < submitted && failure == null)
+                {
+                    try
+                    {
+                        wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * flushes the log and stops the background thread. calling it again does nothing, from
+     * any thread (GIS closes the log from its shutdown hook)
+     *
+     * @throws IOException if the log file could not be written
+     */
+    public synchronized void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            if (flusher != null)
+            {
+                flusher.interrupt();
+            }
+        }
+    }
+
+    /**
+     * simple getter for the number of bytes written to the log
+     *
+     * @return the byte count, including bytes still buffered
+     */
+    public long bytesWritten()
+    {
+        return bytes;
+    }
+
+    /**
+     * makes room in the full current buffer, by writing it out or, in memory, by growing it
+     */
+    private void makeRoom() throws IOException
+    {
+        if (channel == null)
+        {
+            ByteBuffer larger = ByteBuffer.allocate(current.capacity() * 2);
+            current.flip();
+            larger.put(current);
+            current = larger;
+            return;
+        }
+
+        handOff();
+    }
+
+    /**
+     * passes the current buffer on to be written and starts on an empty one
+     */
+    private void handOff() throws IOException
+    {
+        current.flip();
+
+        // synchronous, write it here
+        if (flusher == null)
+        {
+            write(current);
+            current.clear();
+            return;
+        }
+
+        try
+        {
+            // blocks while the ring is full, i.e. the disk is behind
+            synchronized (this)
+            {
+                submitted++;
+            }
+            full.put(current);
+            current = free.take();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while writing the log", e);
+        }
+    }
+
+    /**
+     * body of the background thread, writes full buffers in the order they were handed off
+     */
+    private void drain()
+    {
+        try
+        {
+            while (true)
+            {
+                ByteBuffer buffer = full.take();
+                try
+                {
+                    write(buffer);
+                }
+                catch (IOException e)
+                {
+                    failure = e;
+                }
+
+                buffer.clear();
+                free.put(buffer);
+                synchronized (this)
+                {
+                    written++;
+                    notifyAll();
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // closed
+        }
+    }
+
+    /**
+     * writes a whole buffer to the channel
+     */
+    private void write(ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+}
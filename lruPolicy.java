@@ -0,0 +1,51 @@
+/**
+ * plain LRU replacement for the buffer pool: the least recently used record is always the
+ * victim and every new record is admitted. the pool's own recency list is the whole state
+ *
+ * @author mason gelletly
+ * @version 5.15.22
+ */
+public class lruPolicy implements poolPolicy
+{
+    @Override
+    public void onAccess(Long offset)
+    {
+        // recency is tracked by the pool
+    }
+
+    @Override
+    public void onHit(Long offset)
+    {
+        // recency is tracked by the pool
+    }
+
+    @Override
+    public Long victim(Long lruOffset)
+    {
+        return lruOffset;
+    }
+
+    @Override
+    public boolean admit(Long offset, Long victim)
+    {
+        return true;
+    }
+
+    @Override
+    public void onInsert(Long offset)
+    {
+        // nothing to track
+    }
+
+    @Override
+    public void onEvict(Long offset)
+    {
+        // nothing to track
+    }
+
+    @Override
+    public String name()
+    {
+        return "lru";
+    }
+}
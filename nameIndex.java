@@ -0,0 +1,113 @@
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * the GIS feature name index: entries keyed by feature name, each holding the file offsets
+ * of the records that MATCH that name
+ *
+ * available indexes (the -index command line option):
+ *      probe      : probeTable, open addressing over flat arrays. one thread inserts at a
+ *                   time, and lookups may run on several threads while nothing is inserted
+ *      concurrent : concurrentTable, lock-striped chains. any number of threads insert and
+ *                   merge at once while lookups run without locking
+ *
+ * merge() never changes a stored element in place: the merger hands back the combined
+ * element and the index stores it instead of the old one. a reader holding the old element
+ * keeps a complete, unchanging view of it, so an index can be read while it is written to
+ *
+ * @author mason gelletly
+ * @version 5.26.22
+ */
+public interface nameIndex<T extends Hashable<T> >
+{
+    /**
+     * searches the index for an element that matches elem (according to the equals()
+     * method for the user's data type)
+     *
+     * @param elem : the element looked for
+     * @return reference to the matching element; null if no match is found
+     */
+    T find(T elem);
+
+    /**
+     * inserts elem unless a matching element is already stored
+     *
+     * @param elem : the element to insert
+     * @return true if elem has been inserted, false if it was a duplicate
+     */
+    boolean insert(T elem);
+
+    /**
+     * inserts elem unless a matching element is already stored. for a duplicate, the stored
+     * element is replaced by merger.apply(stored, elem) in one step, so no other insert or
+     * merge of the same name can come in between
+     *
+     * @param elem : the element to insert
+     * @param merger : combines the stored element and elem into a new element, without
+     *                 changing either; null to leave a stored element as it is
+     * @return the element now stored for a duplicate; null if elem has been inserted
+     */
+    T merge(T elem, BinaryOperator<T> merger);
+
+    /**
+     * performs the given action on every stored element
+     *
+     * @param action : called once per element
+     */
+    void forEach(Consumer<? super T> action);
+
+    /**
+     * simple getter for the number of stored elements
+     *
+     * @return the element count
+     */
+    int numElements();
+
+    /**
+     * simple getter for the number of slots
+     *
+     * @return the table size
+     */
+    int getSize();
+
+    /**
+     * formatted display of the index contents, for show hash
+     *
+     * @return the display
+     */
+    String display();
+
+    /**
+     * simple getter for the number of lookups
+     *
+     * @return the number of find() calls
+     */
+    long lookups();
+
+    /**
+     * simple getter for the number of stored elements examined by lookups
+     *
+     * @return the probe count
+     */
+    long probes();
+
+    /**
+     * creates an empty index by name
+     *
+     * @param name : probe or concurrent
+     * @return the index; null for an unknown name
+     */
+    static <T extends Hashable<T> > nameIndex<T> forName(String name)
+    {
+        if (name.equals("probe"))
+        {
+            return new probeTable<T>(256, 0.7);
+        }
+        if (name.equals("concurrent"))
+        {
+            return new concurrentTable<T>(256, 0.75, null);
+        }
+
+        return null;
+    }
+}
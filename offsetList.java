@@ -0,0 +1,345 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * growable list of database file offsets, held as primitive longs
+ *
+ * replaces the ArrayList<Long> a dataEntry or gisEntry used to keep its offsets in: no Long
+ * object per offset and no reference array beside the values. most names and most
+ * coordinates only ever get one offset, so the first one is held in a field of its own and
+ * the array is only made for the second. appends are amortized O(1)
+ *
+ * a list that grows past packThreshold offsets in increasing order is compressed into a
+ * postingList (delta varints with skip pointers), which takes two to three bytes per offset
+ * instead of eight. short lists stay plain arrays, where the bookkeeping would cost more
+ * than it saves
+ *
+ * offsets are unique within a list. GIS appends records to the database and indexes them in
+ * file order, so the offsets of one entry arrive in increasing order and a duplicate can only
+ * be the last offset added; while the list stays in increasing order, checking for one costs
+ * a single comparison. an offset that arrives out of order is still accepted (after a search
+ * of the list), and the list keeps it in the order it was added, as a plain array from then
+ * on. only such a list pays for a scan on every later add
+ *
+ * iteration goes through a PrimitiveIterator.OfLong, nothing is boxed, and a compressed list
+ * is decoded a block at a time as it streams
+ *
+ * a list is used by one thread at a time. an owner that shares its lists with readers on
+ * other threads uses withOffset() instead of add(): it leaves the list as it is and hands
+ * back a new version, without copying the offsets
+ *
+ * @author mason gelletly
+ * @version 5.25.22
+ */
+public class offsetList
+{
+    // offsets after the first kept as a plain array before the list is compressed
+    private static final int packThreshold = 16;
+
+    private long head; // the first offset
+    private long[] tail = null; // plain form, the offsets after the first in tail[0 .. size - 2]
+    private postingList packed = null; // compressed form of the offsets after the first
+    private int size = 0;
+    private boolean ascending = true; // every offset added so far was larger than the one before
+
+    /**
+     * constructor for a list holding a single offset
+     *
+     * @param first : the first offset
+     */
+    public offsetList(long first)
+    {
+        head = first;
+        size = 1;
+    }
+
+    /**
+     * copy constructor, the copy gets arrays of its own
+     *
+     * @param other : the list to copy
+     */
+    public offsetList(offsetList other)
+    {
+        head = other.head;
+        tail = (other.tail == null) ? null : Arrays.copyOf(other.tail, other.size - 1);
+        packed = (other.packed == null) ? null : new postingList(other.packed);
+        size = other.size;
+        ascending = other.ascending;
+    }
+
+    /**
+     * adds an offset to the end of the list, unless the list already holds it
+     *
+     * @param offset : the offset to add
+     * @return true if the offset was added, false if it was a duplicate
+     */
+    public boolean add(long offset)
+    {
+        // DUPLICATE CHECK
+        // in increasing order only the last offset can match, anything larger is new
+        long last = this.last();
+        if (offset == last || ((!ascending || offset < last) && this.contains(offset)))
+        {
+            return false;
+        }
+
+        // ------------------------ COMPRESSED ------------------------------------
+        if (packed != null)
+        {
+            if (offset > last)
+            {
+                packed.append(offset);
+                size++;
+                return true;
+            }
+
+            // out of order, back to a plain array for good
+            tail = new long[size + (size >> 1)];
+            long[] decoded = new long[postingList.blockSize];
+            for (int block = 0, filled = 0; block < packed.blocks(); block++)
+            {
+                int count = packed.decode(block, decoded);
+                System.arraycopy(decoded, 0, tail, filled, count);
+                filled += count;
+            }
+            packed = null;
+        }
+
+        // ------------------------ PLAIN -----------------------------------------
+        // out of order, later checks search the whole list
+        if (offset < last)
+        {
+            ascending = false;
+        }
+
+        // the tail starts at two and grows by half again when full (a copy's tail is cut to
+        // size and may be a single slot, or none, so it grows to two at least)
+        if (tail == null)
+        {
+            tail = new long[2];
+        }
+        else if (size - 1 == tail.length)
+        {
+            tail = Arrays.copyOf(tail, Math.max(2, tail.length + (tail.length >> 1)));
+        }
+        tail[size - 1] = offset;
+        size++;
+
+        // long enough to compress, if it is in increasing order
+        if (size - 1 == packThreshold + 1 && ascending)
+        {
+            packed = new postingList(head, 2 * packThreshold);
+            for (int idx = 0; idx < size - 1; idx++)
+            {
+                packed.append(tail[idx]);
+            }
+            tail = null;
+        }
+
+        return true;
+    }
+
+    /**
+     * this list with one more offset, as a new list, leaving this one unchanged (unless the
+     * offset is already here). the new list shares this one's arrays and only writes past the
+     * end of what this one holds, so a reader still walking this list is never disturbed and
+     * nothing is copied. from then on only the new list may be added to
+     *
+     * @param offset : the offset to add
+     * @return the new list; this list if the offset is a duplicate
+     */
+    public offsetList withOffset(long offset)
+    {
+        offsetList next = new offsetList(head);
+        next.tail = tail;
+        next.packed = (packed == null) ? null : packed.share();
+        next.size = size;
+        next.ascending = ascending;
+
+        return next.add(offset) ? next : this;
+    }
+
+    /**
+     * checks whether the list holds an offset
+     *
+     * @param offset : the offset looked for
+     * @return true if it is in the list
+     */
+    public boolean contains(long offset)
+    {
+        if (head == offset)
+        {
+            return true;
+        }
+
+        // compressed, one block is decoded
+        if (packed != null)
+        {
+            return packed.contains(offset);
+        }
+
+        // sorted, binary search
+        if (ascending)
+        {
+            return size > 1 && Arrays.binarySearch(tail, 0, size - 1, offset) >= 0;
+        }
+
+        for (int idx = 0; idx < size - 1; idx++)
+        {
+            if (tail[idx] == offset)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * simple getter for the number of offsets
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * simple getter for the first offset added
+     *
+     * @return the first offset
+     */
+    public long first()
+    {
+        return head;
+    }
+
+    /**
+     * simple getter for the most recent offset added
+     *
+     * @return the last offset
+     */
+    public long last()
+    {
+        if (size == 1)
+        {
+            return head;
+        }
+
+        return (packed != null) ? packed.last() : tail[size - 2];
+    }
+
+    /**
+     * offset at a position in the list. a compressed list decodes part of one block, so
+     * walking the list goes through iterator() instead
+     *
+     * @param idx : 0 for the first offset added
+     * @return the offset
+     */
+    public long get(int idx)
+    {
+        if (idx < 0 || idx >= size)
+        {
+            throw new IndexOutOfBoundsException(idx);
+        }
+
+        if (idx == 0)
+        {
+            return head;
+        }
+
+        return (packed != null) ? packed.get(idx - 1) : tail[idx - 1];
+    }
+
+    /**
+     * iterator over the offsets, in the order they were added
+     *
+     * a plain list is read straight out of its tail. a compressed one is decoded a block at a
+     * time into an array of the iterator's own and read out of that, so either way handing
+     * out an offset is an array read and what_is sees one iterator class
+     *
+     * @return an iterator that hands out primitive longs
+     */
+    public PrimitiveIterator.OfLong iterator()
+    {
+        return new PrimitiveIterator.OfLong()
+        {
+            private int left = size; // offsets still to hand out, the head included
+            private boolean atHead = true;
+            private long[] values = (packed == null) ? tail : null;
+            private int next = 0; // next index read from values
+            private int end = (packed == null) ? size - 1 : 0; // values in use
+            private int block = 0; // next block to decode
+
+            @Override
+            public boolean hasNext()
+            {
+                return left > 0;
+            }
+
+            @Override
+            public long nextLong()
+            {
+                if (left <= 0)
+                {
+                    throw new NoSuchElementException();
+                }
+                left--;
+
+                if (atHead)
+                {
+                    atHead = false;
+                    return head;
+                }
+
+                // only a compressed list runs out of decoded values
+                if (next == end)
+                {
+                    if (values == null)
+                    {
+                        values = new long[postingList.blockSize];
+                    }
+                    end = packed.decode(block++, values);
+                    next = 0;
+                }
+
+                return values[next++];
+            }
+        };
+    }
+
+    /**
+     * simple getter for the bytes the offsets take, not counting the list objects
+     *
+     * @return 8 for the first offset plus the size of the tail array or the compressed bytes
+     */
+    public long footprint()
+    {
+        if (packed != null)
+        {
+            return 8 + packed.encodedBytes();
+        }
+
+        return 8 + ((tail == null) ? 0 : 8L * tail.length);
+    }
+
+    /**
+     * a way to display the offsets, formatted as a List of Longs would be
+     *
+     * formatting:
+     *      [offset, offset, ...]
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("[");
+        for (PrimitiveIterator.OfLong offsets = this.iterator(); offsets.hasNext(); )
+        {
+            sb.append(offsets.nextLong()).append(offsets.hasNext() ? ", " : "");
+        }
+
+        return sb.append("]").toString();
+    }
+}
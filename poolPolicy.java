@@ -0,0 +1,96 @@
+/**
+ * replacement policy of the buffer pool
+ *
+ * the pool keeps the records and their recency order, the policy decides which record leaves
+ * when the pool is full and whether a new record is worth a place at all. every call is
+ * keyed by database offset
+ *
+ * available policies (the -policy command line option):
+ *      lru     : least recently used, every new record is admitted
+ *      2q      : 2Q, records seen once wait in a small FIFO and only records that come back
+ *                reach the main LRU, so a one-off scan cannot flush the hot set
+ *      tinylfu : LRU guarded by a frequency sketch, a new record only displaces the LRU
+ *                record if it has been asked for more often
+ *
+ * @author mason gelletly
+ * @version 5.15.22
+ */
+public interface poolPolicy
+{
+    /**
+     * called on every lookup, hit or miss, before anything else happens
+     *
+     * @param offset : the record asked for
+     */
+    void onAccess(Long offset);
+
+    /**
+     * called when a lookup finds its record in the pool
+     *
+     * @param offset : the record found
+     */
+    void onHit(Long offset);
+
+    /**
+     * picks the record to evict from a full pool
+     *
+     * @param lruOffset : the least recently used record of the pool
+     * @return the record to evict
+     */
+    Long victim(Long lruOffset);
+
+    /**
+     * decides whether a new record should replace the chosen victim
+     *
+     * @param offset : the new record
+     * @param victim : the record it would replace
+     * @return true to evict the victim and admit the new record
+     */
+    boolean admit(Long offset, Long victim);
+
+    /**
+     * called after a record has been added to the pool
+     *
+     * @param offset : the record added
+     */
+    void onInsert(Long offset);
+
+    /**
+     * called after a record has been evicted from the pool
+     *
+     * @param offset : the record evicted
+     */
+    void onEvict(Long offset);
+
+    /**
+     * simple getter for the policy name, as given on the command line
+     *
+     * @return the name
+     */
+    String name();
+
+    /**
+     * creates a policy by name
+     *
+     * @param name : lru, 2q or tinylfu
+     * @param capacity : most records the pool holds
+     * @return the policy; null for an unknown name
+     */
+    static poolPolicy forName(String name, int capacity)
+    {
+        if (name.equals("lru"))
+        {
+            return new lruPolicy();
+        }
+        if (name.equals("2q"))
+        {
+            return new twoQueuePolicy(capacity);
+        }
+        if (name.equals("tinylfu"))
+        {
+            return new tinyLfuPolicy(capacity);
+        }
+
+        return null;
+    }
+}
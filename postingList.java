@@ -0,0 +1,282 @@
+import java.util.Arrays;
+
+/**
+ * compressed list of increasing file offsets, the form an offsetList switches to once it
+ * holds more than a handful of offsets
+ *
+ * every offset is stored as its difference from the one before (the first from a base the
+ * owner supplies), written as a varint: seven bits per byte, low bits first, the top bit set
+ * on every byte but the last. offsets of one name sit in the same file, usually a few
+ * hundred bytes to a few megabytes apart, so most take two or three bytes instead of eight
+ *
+ * a varint stream can only be read from the front, so large lists keep a skip pointer at
+ * the start of every block of blockSize offsets: the offset just before the block and the
+ * byte the block starts at. contains() binary searches the skip pointers and decodes a
+ * single block, get() jumps straight to the block holding the position. iteration decodes
+ * block by block into a reused array (see decode()), which keeps the per offset cost of a
+ * walk close to that of a plain long[]
+ *
+ * offsets must be appended in strictly increasing order, the owner checks
+ *
+ * share() makes a new version of a list in constant time for copy-on-write owners: the new
+ * version uses the same arrays and only ever writes past the end of what the old one holds,
+ * so readers of the old version are never disturbed
+ *
+ * @author mason gelletly
+ * @version 5.25.22
+ */
+public class postingList
+{
+    // offsets per block between skip pointers, and per decode()
+    public static final int blockSize = 64;
+
+    private byte[] bytes; // the varint deltas, bytes[0 .. length - 1] are in use
+    private int length = 0;
+    private int count = 0; // offsets stored
+    private long base; // offset the first delta is taken from
+    private long last; // most recent offset, the next delta is taken from it
+
+    // SKIP POINTERS, entry k for the block starting at offset k * blockSize (k >= 1)
+    private long[] skipValues = null; // offset just before the block
+    private int[] skipPositions = null; // byte the block's first delta starts at
+
+    /**
+     * constructor for an empty list
+     *
+     * @param base : offset the first delta is taken from, smaller than every offset added
+     * @param expected : offsets the list should have room for to begin with
+     */
+    public postingList(long base, int expected)
+    {
+        this.base = base;
+        this.last = base;
+        this.bytes = new byte[Math.max(8, expected * 3)];
+    }
+
+    /**
+     * copy constructor, the copy gets arrays of its own
+     *
+     * @param other : the list to copy
+     */
+    public postingList(postingList other)
+    {
+        bytes = Arrays.copyOf(other.bytes, other.length);
+        length = other.length;
+        count = other.count;
+        base = other.base;
+        last = other.last;
+
+        if (other.skipValues != null)
+        {
+            skipValues = Arrays.copyOf(other.skipValues, this.blocks());
+            skipPositions = Arrays.copyOf(other.skipPositions, this.blocks());
+        }
+    }
+
+    /**
+     * constructor for share()
+     */
+    private postingList()
+    {
+    }
+
+    /**
+     * copy that shares this list's arrays instead of copying them, in constant time. the copy
+     * only ever writes past the end of what this list holds (or into arrays of its own once
+     * it grows them), so this list stays exactly as it is while the copy is appended to. from
+     * then on only the copy may be appended to
+     *
+     * @return the copy
+     */
+    public postingList share()
+    {
+        postingList copy = new postingList();
+        copy.bytes = bytes;
+        copy.length = length;
+        copy.count = count;
+        copy.base = base;
+        copy.last = last;
+        copy.skipValues = skipValues;
+        copy.skipPositions = skipPositions;
+
+        return copy;
+    }
+
+    /**
+     * appends an offset
+     *
+     * @pre offset > last()
+     * @param offset : the offset to add
+     */
+    public void append(long offset)
+    {
+        // a new block starts here, remember where
+        if (count > 0 && count % blockSize == 0)
+        {
+            int block = count / blockSize;
+            if (skipValues == null)
+            {
+                skipValues = new long[4];
+                skipPositions = new int[4];
+            }
+            else if (block == skipValues.length)
+            {
+                skipValues = Arrays.copyOf(skipValues, block * 2);
+                skipPositions = Arrays.copyOf(skipPositions, block * 2);
+            }
+            skipValues[block] = last;
+            skipPositions[block] = length;
+        }
+
+        // at most ten bytes per varint, grow by half again
+        if (length + 10 > bytes.length)
+        {
+            bytes = Arrays.copyOf(bytes, bytes.length + (bytes.length >> 1) + 10);
+        }
+
+        // seven bits at a time, low bits first
+        long delta = offset - last;
+        while ((delta & ~0x7FL) != 0)
+        {
+            bytes[length++] = (byte)((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        bytes[length++] = (byte)delta;
+
+        last = offset;
+        count++;
+    }
+
+    /**
+     * simple getter for the number of offsets
+     *
+     * @return the count
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * simple getter for the most recent offset
+     *
+     * @return the last offset appended, the base if there is none
+     */
+    public long last()
+    {
+        return last;
+    }
+
+    /**
+     * offset at a position, decoded from the start of its block
+     *
+     * @param idx : 0 for the first offset appended
+     * @return the offset
+     */
+    public long get(int idx)
+    {
+        if (idx < 0 || idx >= count)
+        {
+            throw new IndexOutOfBoundsException(idx);
+        }
+
+        long[] block = new long[blockSize];
+        this.decode(idx / blockSize, block);
+
+        return block[idx % blockSize];
+    }
+
+    /**
+     * checks whether the list holds an offset, decoding at most one block
+     *
+     * @param offset : the offset looked for
+     * @return true if it is in the list
+     */
+    public boolean contains(long offset)
+    {
+        if (offset <= base || offset > last)
+        {
+            return false;
+        }
+
+        // last block whose previous offset is below the one looked for
+        int lo = 0;
+        int hi = this.blocks() - 1;
+        while (lo < hi)
+        {
+            int mid = (lo + hi + 1) >>> 1;
+            if (skipValues[mid] < offset)
+            {
+                lo = mid;
+            }
+            else
+            {
+                hi = mid - 1;
+            }
+        }
+
+        long[] block = new long[blockSize];
+        int decoded = this.decode(lo, block);
+
+        return Arrays.binarySearch(block, 0, decoded, offset) >= 0;
+    }
+
+    /**
+     * simple getter for the number of blocks, the last one may be partly filled
+     *
+     * @return the block count
+     */
+    public int blocks()
+    {
+        return (count + blockSize - 1) / blockSize;
+    }
+
+    /**
+     * decodes every offset of one block, the way iteration reads the list: a whole block at
+     * a time into an array the caller reuses, so handing out an offset is an array read
+     *
+     * @param block : the block, 0 for the first
+     * @param into : receives the offsets from index 0, room for blockSize of them
+     * @return the number of offsets decoded, blockSize for every block but the last
+     */
+    public int decode(int block, long[] into)
+    {
+        int position = (block == 0) ? 0 : skipPositions[block];
+        long value = (block == 0) ? base : skipValues[block];
+        int decoded = Math.min(blockSize, count - block * blockSize);
+
+        for (int idx = 0; idx < decoded; idx++)
+        {
+            // one and two byte deltas are the common case, taken without a loop
+            long delta = bytes[position++];
+            if (delta < 0)
+            {
+                delta &= 0x7F;
+                long curr = bytes[position++];
+                delta |= (curr & 0x7F) << 7;
+
+                // seven bits at a time until a byte without the top bit
+                for (int shift = 14; curr < 0; shift += 7)
+                {
+                    curr = bytes[position++];
+                    delta |= (curr & 0x7F) << shift;
+                }
+            }
+
+            value += delta;
+            into[idx] = value;
+        }
+
+        return decoded;
+    }
+
+    /**
+     * simple getter for the bytes the encoded offsets take
+     *
+     * @return the encoded length
+     */
+    public int encodedBytes()
+    {
+        return length;
+    }
+}
@@ -1,3 +1,17 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
 public class prQuadTree< T extends Compare2D<? super T> >
 {
     /**
@@ -7,7 +21,8 @@ public class prQuadTree< T extends Compare2D<? super T> >
      */
     public abstract class prQuadNode
     {
-        //purely universal classification purposes, empty class
+        // no fields of its own: the nodes a snapshot write may change in place are kept in
+        // that write's ownedNodes, so nodes of a plain tree carry nothing for snapshot reads
     }
 
     // -------------------------- LEAF NODE ------------------------------------------
@@ -67,10 +82,24 @@ public class prQuadTree< T extends Compare2D<? super T> >
 
     // --------------------- QUADTREE CONSTRUCTORS ---------------------------------------
     // prQuadTree elements (public so test harness has access)
-    public prQuadNode root;
+    public volatile prQuadNode root;
     public long xMin, xMax, yMin, yMax;
     private int bucket;
 
+    // SNAPSHOT READS
+    // a write never changes a node or element a reader can reach: the paths it touches are
+    // copied and the new root is published in one volatile write, so a query holds on to the
+    // root it started with and sees the tree exactly as it was then, without locking
+    private final boolean snapshots;
+    private final Object writeLock = new Object(); // one write at a time
+    private Set<prQuadNode> ownedNodes; // nodes the write in progress has made, null between writes
+    private Set<T> ownedElems; // elements the write in progress has already copied
+
+    // nodes opened by queries, in total and by each thread. queries only read the tree, so
+    // several threads may run them at once; a query counts locally and adds its total here
+    private final LongAdder nodesVisited = new LongAdder();
+    private final ThreadLocal<long[]> threadVisits = ThreadLocal.withInitial(() -> new long[1]);
+
     /**
      * prQuadTree constructor with added parameter to account for changed bucket size
      *
@@ -83,6 +112,26 @@ public class prQuadTree< T extends Compare2D<? super T> >
      * @param bucket // size of bucket for nodes
      */
     public prQuadTree(long xMin, long xMax, long yMin, long yMax, int bucket)
+    {
+        this(xMin, xMax, yMin, yMax, bucket, false);
+    }
+
+    /**
+     * prQuadTree constructor with snapshot reads, for a tree that keeps answering queries
+     * while it is written to
+     *
+     * with snapshots on, writers copy the path from the root to every node they change and
+     * publish the new root atomically. readers never block and never see half a write; a
+     * bulkLoad() is a single write, so a whole import appears at once
+     *
+     * @param xMin   // point 1 x value
+     * @param xMax   // point 2 x value
+     * @param yMin   // point 1 y value
+     * @param yMax   // point 2 y value
+     * @param bucket // size of bucket for nodes
+     * @param snapshots // true to copy on write, false to change nodes in place (one thread only)
+     */
+    public prQuadTree(long xMin, long xMax, long yMin, long yMax, int bucket, boolean snapshots)
     {
         // initialize quadTree points to parametized values
         this.xMin = xMin;
@@ -92,6 +141,7 @@ public class prQuadTree< T extends Compare2D<? super T> >
 
         // update bucket size of quadtree
         this.bucket = bucket;
+        this.snapshots = snapshots;
 
         // no initial data, so root remains empty
         this.root = null;
@@ -151,6 +201,13 @@ public class prQuadTree< T extends Compare2D<? super T> >
             return false;
         }
 
+        // copy on write, published at the root
+        if (this.snapshots)
+        {
+            this.write(List.of(elem));
+            return true;
+        }
+
         // true insertion
         // utilizes helper method for recursion to delve into tree and properly insert
         this.root = this.insertHelper(elem, this.root, this.xMin, this.xMax, this.yMin,
@@ -185,7 +242,7 @@ public class prQuadTree< T extends Compare2D<? super T> >
         if (sRoot == null)
         {
             // BEGIN THE TREE!!
-            sRoot = new prQuadLeaf(elem);
+            sRoot = this.made(new prQuadLeaf(elem));
         }
 
         // if point is within the boundaries of the world and tree is non-empty (VALID INSERTION)
@@ -224,7 +281,8 @@ public class prQuadTree< T extends Compare2D<? super T> >
                     if (currEntry.equals(elemEntry))
                     {
                         // update sentinel due to finding correct node. BASE CASE
-                        elemEntry.addOffset(currEntry.getFirstOffset());
+                        leafNode = this.writable(leafNode);
+                        this.mergeDuplicate(this.writable(leafNode, idx), elem);
                         prevInserted = true;
                     }
                 }
@@ -241,8 +299,9 @@ public class prQuadTree< T extends Compare2D<? super T> >
                 else
                 {
                     // FULL BUCKET
-                    // must split and then fill the new internal node
-                    if (leafNode.size == this.bucket)
+                    // must split and then fill the new internal node, unless the region is
+                    // too small to split (see splittable())
+                    if (leafNode.size >= this.bucket && splittable(xLo, xHi, yLo, yHi))
                     {
                         // recursive call to helper functions split() to split
                         // and internalInsert() to fill internal node
@@ -250,11 +309,13 @@ public class prQuadTree< T extends Compare2D<? super T> >
                         sRoot = this.internalInsert((prQuadInternal) sRoot, elem,
                                 xLo, xHi, yLo, yHi);
                     }
-                    // NOT FULL BUCKET
+                    // NOT FULL BUCKET (or one that cannot be split, which grows past the
+                    // bucket size instead)
                     // simply add the node to the bucket!
-                    else if (leafNode.size < this.bucket)
+                    else
                     {
                         // add to bucket
+                        leafNode = this.writable(leafNode);
                         leafNode.Elements.add(elem);
 
                         // update size and sRoot
@@ -286,9 +347,12 @@ public class prQuadTree< T extends Compare2D<? super T> >
      */
     private prQuadInternal split(prQuadNode sRoot, long xLo, long xHi, long yLo, long yHi) throws Exception
     {
+        gisEvents.quadtreeSplit event = new gisEvents.quadtreeSplit();
+        event.begin();
+
         // create the internal node that is the result of the split
         // (also the return value)
-        prQuadInternal babyInternal = new prQuadInternal();
+        prQuadInternal babyInternal = this.made(new prQuadInternal());
 
         // cast sRoot to leaf node so that we may access leafNode properties. this is okay unchecked since
         // only a leafNode should be being split()
@@ -302,6 +366,16 @@ public class prQuadTree< T extends Compare2D<? super T> >
                     yLo, yHi);
         }
 
+        if (event.shouldCommit())
+        {
+            event.elements = leafNode.size;
+            event.xLo = xLo;
+            event.xHi = xHi;
+            event.yLo = yLo;
+            event.yHi = yHi;
+            event.commit();
+        }
+
         // return the newly created internal node
         return babyInternal;
     }
@@ -322,6 +396,13 @@ public class prQuadTree< T extends Compare2D<? super T> >
      */
     private prQuadInternal internalInsert(prQuadInternal internalNode, T elem, long xLo, long xHi, long yLo, long yHi) throws Exception
     {
+        // internal nodes only exist for splittable regions (insertHelper() keeps an over-full
+        // leaf otherwise), so each child region below is smaller than this one and the
+        // recursion ends at the latest in regions one second wide
+
+        // the child pointer is about to change
+        internalNode = this.writable(internalNode);
+
         // ------------------------ MID CALCULATIONS -----------------------------
         // update mid variables
         long middleX = ((xHi + xLo) / 2);
@@ -358,19 +439,528 @@ public class prQuadTree< T extends Compare2D<? super T> >
         return internalNode;
     }
 
+    /**
+     * whether a region can be split into quadrants. the midpoint of a region one second wide
+     * (or less) is one of its own edges, so a child would get the whole region again and the
+     * split would repeat forever on a dense cluster of adjacent points. such a region keeps a
+     * single leaf, over-full if need be
+     *
+     * @param xLo : coordinates
+     * @param xHi
+     * @param yLo
+     * @param yHi
+     * @return true if the region is more than one second wide in both directions
+     */
+    private static boolean splittable(long xLo, long xHi, long yLo, long yHi)
+    {
+        return xHi - xLo > 1 && yHi - yLo > 1;
+    }
+
+    /**
+     * helper method that combines a duplicate (an element at the same coordinates as one
+     * already in a bucket) with the stored element
+     *
+     * @param stored : the element already in the tree
+     * @param elem : the duplicate being inserted
+     */
+    private void mergeDuplicate(T stored, T elem)
+    {
+        // cast nodes to gisEntry, offsets are the only thing to carry over
+        gisEntry storedEntry = (gisEntry)stored;
+        gisEntry elemEntry = (gisEntry)elem;
+
+        // the stored element is the one left in the tree, so it collects the new offset
+        storedEntry.addOffset(elemEntry.getFirstOffset());
+    }
+
+    // ---------------------------------- SNAPSHOT WRITES -------------------------------------
+    /**
+     * inserts a run of elements as one write: the paths they touch are copied, and the new
+     * root is published once every element is in. a reader sees all of them or none. if an
+     * insert fails nothing is published
+     *
+     * @param elems : the elements to be added, those outside the world are skipped
+     * @return the number of elements accepted
+     * @throws Exception
+     */
+    private int write(Collection<T> elems) throws Exception
+    {
+        synchronized (this.writeLock)
+        {
+            // nodes made from here on belong to this write and can change in place
+            this.ownedNodes = Collections.newSetFromMap(new IdentityHashMap<prQuadNode, Boolean>(2 * elems.size()));
+            this.ownedElems = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+            try
+            {
+                int accepted = 0;
+                prQuadNode draft = this.root;
+                for (T elem : elems)
+                {
+                    if (elem != null && elem.getX() >= this.xMin && elem.getX() <= this.xMax &&
+                            elem.getY() >= this.yMin && elem.getY() <= this.yMax)
+                    {
+                        draft = this.insertHelper(elem, draft, this.xMin, this.xMax, this.yMin, this.yMax);
+                        accepted++;
+                    }
+                }
+
+                // publish
+                this.root = draft;
+
+                // finale return!
+                return accepted;
+            }
+            finally
+            {
+                this.ownedNodes = null;
+                this.ownedElems = null;
+            }
+        }
+    }
+
+    /**
+     * node an insert may change: the node itself when nodes change in place or it was made by
+     * the write in progress, otherwise a copy of it for the new tree
+     *
+     * @param internalNode : node on the insert's path
+     * @return the node to change
+     */
+    private prQuadInternal writable(prQuadInternal internalNode)
+    {
+        if (!this.snapshots || this.ownedNodes.contains(internalNode))
+        {
+            return internalNode;
+        }
+
+        prQuadInternal copy = this.made(new prQuadInternal());
+        copy.NW = internalNode.NW;
+        copy.NE = internalNode.NE;
+        copy.SE = internalNode.SE;
+        copy.SW = internalNode.SW;
+        copy.xLo = internalNode.xLo;
+        copy.xHi = internalNode.xHi;
+        copy.yLo = internalNode.yLo;
+        copy.yHi = internalNode.yHi;
+
+        return copy;
+    }
+
+    /**
+     * leaf an insert may change, see writable(prQuadInternal)
+     *
+     * @param leafNode : leaf on the insert's path
+     * @return the leaf to change
+     */
+    private prQuadLeaf writable(prQuadLeaf leafNode)
+    {
+        if (!this.snapshots || this.ownedNodes.contains(leafNode))
+        {
+            return leafNode;
+        }
+
+        prQuadLeaf copy = this.made(new prQuadLeaf());
+        copy.Elements.addAll(leafNode.Elements);
+        copy.size = leafNode.size;
+
+        return copy;
+    }
+
+    /**
+     * node made by an insert, recorded as the write's own when a snapshot write is in
+     * progress so later inserts of the same write change it in place instead of copying it
+     *
+     * @param node : the new node
+     * @return the node
+     */
+    private <N extends prQuadNode> N made(N node)
+    {
+        if (this.ownedNodes != null)
+        {
+            this.ownedNodes.add(node);
+        }
+
+        return node;
+    }
+
+    /**
+     * element of a writable leaf that a duplicate may be merged into: with snapshots on an
+     * element readers can still reach is replaced by a copy first (once per write)
+     *
+     * @param leafNode : leaf returned by writable()
+     * @param idx : position of the element in the bucket
+     * @return the element to change
+     */
+    @SuppressWarnings("unchecked")
+    private T writable(prQuadLeaf leafNode, int idx)
+    {
+        T stored = leafNode.Elements.get(idx);
+        if (!this.snapshots || this.ownedElems.contains(stored))
+        {
+            return stored;
+        }
+
+        // cast to gisEntry as in mergeDuplicate(), the copy gets its own offset list
+        stored = (T) new gisEntry((gisEntry)stored);
+        leafNode.Elements.set(idx, stored);
+        this.ownedElems.add(stored);
+
+        return stored;
+    }
+
+    // ---------------------------------- BULK LOAD -------------------------------------------
+    // slices with at least this many points are split across the fork-join pool
+    private static final int parallelThreshold = 1 << 13;
+
+    /**
+     * a point waiting to be bulk loaded, tagged with its position in the input
+     */
+    private static class bulkPoint<E>
+    {
+        E elem;
+        int order;
+        int quadrant; // quadrant digit at the level being partitioned
+
+        bulkPoint(E elem, int order)
+        {
+            this.elem = elem;
+            this.order = order;
+        }
+    }
+
+    /**
+     * Method to build the tree from a whole collection of elements at once
+     *
+     * the points are ordered by quadrant, one quadrant digit per level (Z-order), and each
+     * subtree is built from its contiguous run of points once the run fits in a bucket. the quadrant of a point at
+     * a level is decided by directionFrom() against the same midpoints insert() uses, so the
+     * result is exactly the tree that inserting the elements one at a time, in collection
+     * order, would produce: the same shape for the bucket size, the same bucket order and
+     * the same handling of duplicates. independent quadrants are built in parallel
+     *
+     * a tree that already holds elements is extended with ordinary inserts instead. with
+     * snapshot reads on, either way the collection is one write, published when it is done
+     *
+     * @pre elems != null
+     * @post every non-null element that lies within the tree's region has been inserted
+     * @param elems : the elements to be added
+     * @return the number of elements accepted (elements outside the world are skipped)
+     * @throws Exception
+     */
+    public int bulkLoad(Collection<T> elems) throws Exception
+    {
+        // copy on write, the build is published at the root once it is done
+        if (this.snapshots)
+        {
+            synchronized (this.writeLock)
+            {
+                return (this.root == null) ? this.build(elems) : this.write(elems);
+            }
+        }
+
+        int accepted = 0;
+
+        // existing tree, fall back to incremental insertion
+        if (this.root != null)
+        {
+            for (T elem : elems)
+            {
+                if (this.insert(elem))
+                {
+                    accepted++;
+                }
+            }
+            return accepted;
+        }
+
+        // finale return!
+        return this.build(elems);
+    }
+
+    /**
+     * builds an empty tree from a collection, see bulkLoad()
+     *
+     * @param elems : the elements to be added
+     * @return the number of elements accepted
+     */
+    private int build(Collection<T> elems)
+    {
+        int accepted = 0;
+
+        // keep the elements insert() would accept, remembering their order
+        ArrayList<bulkPoint<T>> points = new ArrayList<bulkPoint<T>>(elems.size());
+        for (T elem : elems)
+        {
+            if (elem != null && elem.getX() >= this.xMin && elem.getX() <= this.xMax &&
+                    elem.getY() >= this.yMin && elem.getY() <= this.yMax)
+            {
+                points.add(new bulkPoint<T>(elem, accepted++));
+            }
+        }
+
+        // ------------------------ BUILD -------------------------------------------
+        bulkPoint<T>[] slice = points.toArray(newPoints(0));
+        this.root = ForkJoinPool.commonPool().invoke(new bulkBuild(slice, 0, slice.length,
+                this.xMin, this.xMax, this.yMin, this.yMax));
+
+        return accepted;
+    }
+
+    /**
+     * quadrant digit of a point for the bulk loader: 0 NE, 1 SE, 2 SW, 3 NW, 4 none
+     */
+    private static <E extends Compare2D<? super E>> int quadrantOf(E elem, long middleX, long middleY)
+    {
+        switch (elem.directionFrom(middleX, middleY))
+        {
+            case NE:
+                return 0;
+            case SE:
+                return 1;
+            case SW:
+                return 2;
+            case NW:
+                return 3;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * helper to allocate an array of bulk points
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E> bulkPoint<E>[] newPoints(int size)
+    {
+        return (bulkPoint<E>[])new bulkPoint[size];
+    }
+
+    /**
+     * fork-join task that builds the subtree for a run of distinct points within a region
+     */
+    @SuppressWarnings("serial")
+    private class bulkBuild extends RecursiveTask<prQuadNode>
+    {
+        private bulkPoint<T>[] points;
+        private int from;
+        private int to;
+        private long xLo, xHi, yLo, yHi;
+
+        bulkBuild(bulkPoint<T>[] points, int from, int to, long xLo, long xHi, long yLo, long yHi)
+        {
+            this.points = points;
+            this.from = from;
+            this.to = to;
+            this.xLo = xLo;
+            this.xHi = xHi;
+            this.yLo = yLo;
+            this.yHi = yHi;
+        }
+
+        @Override
+        protected prQuadNode compute()
+        {
+            int count = to - from;
+
+            // empty quadrant
+            if (count == 0)
+            {
+                return null;
+            }
+
+            // ------------------------ LEAF ----------------------------------------
+            // few enough distinct points for one bucket, or a region too small to split (the
+            // same stop as insertHelper())
+            if (count <= prQuadTree.this.bucket || !splittable(xLo, xHi, yLo, yHi)
+                    || !this.moreDistinctThan(prQuadTree.this.bucket))
+            {
+                return this.leaf();
+            }
+
+            // ------------------------ INTERNAL ------------------------------------
+            // same midpoints as internalInsert()
+            long middleX = ((xHi + xLo) / 2);
+            long middleY = ((yHi + yLo) / 2);
+
+            // partition the run in place into NE, SE, SW, NW (American flag sort on the
+            // quadrant digit). the order inside a quadrant does not matter, leaves restore it.
+            // points with no quadrant are moved past the end and dropped, as internalInsert()
+            // drops them
+            int[] bounds = new int[6];
+            for (int idx = from; idx < to; idx++)
+            {
+                points[idx].quadrant = quadrantOf(points[idx].elem, middleX, middleY);
+                bounds[points[idx].quadrant + 1]++;
+            }
+            for (int quad = 0; quad < 5; quad++)
+            {
+                bounds[quad + 1] += bounds[quad];
+            }
+
+            int[] next = Arrays.copyOf(bounds, 5);
+            for (int quad = 0; quad < 5; quad++)
+            {
+                while (next[quad] < bounds[quad + 1])
+                {
+                    int idx = from + next[quad];
+                    int home = points[idx].quadrant;
+                    if (home == quad)
+                    {
+                        next[quad]++;
+                    }
+                    else
+                    {
+                        // swap into its home quadrant
+                        int dest = from + next[home]++;
+                        bulkPoint<T> swap = points[dest];
+                        points[dest] = points[idx];
+                        points[idx] = swap;
+                    }
+                }
+            }
+            int kept = bounds[4];
+
+            // the bulk loader's counterpart of a split
+            gisEvents.quadtreeSplit event = new gisEvents.quadtreeSplit();
+            if (event.isEnabled())
+            {
+                event.elements = kept;
+                event.bulk = true;
+                event.xLo = xLo;
+                event.xHi = xHi;
+                event.yLo = yLo;
+                event.yHi = yHi;
+                event.commit();
+            }
+
+            // a subtask per quadrant, same child regions as internalInsert()
+            bulkBuild ne = new bulkBuild(points, from + bounds[0], from + bounds[1], middleX, xHi, middleY, yHi);
+            bulkBuild se = new bulkBuild(points, from + bounds[1], from + bounds[2], middleX, xHi, yLo, middleY);
+            bulkBuild sw = new bulkBuild(points, from + bounds[2], from + bounds[3], xLo, middleX, yLo, middleY);
+            bulkBuild nw = new bulkBuild(points, from + bounds[3], from + bounds[4], xLo, middleX, middleY, yHi);
+
+            prQuadInternal babyInternal = new prQuadInternal();
+            if (kept >= parallelThreshold)
+            {
+                // build three quadrants in other workers while this one builds the fourth
+                ne.fork();
+                se.fork();
+                sw.fork();
+                babyInternal.NW = nw.compute();
+                babyInternal.SW = sw.join();
+                babyInternal.SE = se.join();
+                babyInternal.NE = ne.join();
+            }
+            else
+            {
+                babyInternal.NE = ne.compute();
+                babyInternal.SE = se.compute();
+                babyInternal.SW = sw.compute();
+                babyInternal.NW = nw.compute();
+            }
+
+            // finale return!
+            return babyInternal;
+        }
+
+        /**
+         * builds the leaf for this run. insert() appends in arrival order (splits reinsert in
+         * list order) and merges a duplicate into the element that arrived first, so the run
+         * is replayed in input order against the bucket
+         */
+        private prQuadLeaf leaf()
+        {
+            Arrays.sort(points, from, to, Comparator.comparingInt(point -> point.order));
+
+            prQuadLeaf leafNode = new prQuadLeaf();
+            for (int idx = from; idx < to; idx++)
+            {
+                T elem = points[idx].elem;
+
+                // duplicate check against the bucket so far
+                T stored = null;
+                for (T curr : leafNode.Elements)
+                {
+                    if (curr.getX() == elem.getX() && curr.getY() == elem.getY())
+                    {
+                        stored = curr;
+                        break;
+                    }
+                }
+
+                if (stored != null)
+                {
+                    prQuadTree.this.mergeDuplicate(stored, elem);
+                }
+                else
+                {
+                    leafNode.Elements.add(elem);
+                }
+            }
+            leafNode.size = leafNode.Elements.size();
+
+            return leafNode;
+        }
+
+        /**
+         * checks whether the run holds more than limit distinct coordinates, stopping as soon
+         * as it has seen limit + 1 of them
+         */
+        private boolean moreDistinctThan(int limit)
+        {
+            long[] xs = new long[limit];
+            long[] ys = new long[limit];
+            int found = 0;
+
+            for (int idx = from; idx < to; idx++)
+            {
+                long x = points[idx].elem.getX();
+                long y = points[idx].elem.getY();
+
+                boolean seen = false;
+                for (int jdx = 0; jdx < found && !seen; jdx++)
+                {
+                    seen = (xs[jdx] == x && ys[jdx] == y);
+                }
+
+                if (!seen)
+                {
+                    if (found == limit)
+                    {
+                        return true;
+                    }
+                    xs[found] = x;
+                    ys[found] = y;
+                    found++;
+                }
+            }
+
+            return false;
+        }
+    }
+
     // ---------------------------------- FIND ------------------------------------------------
     /**
      * Method to be able to seek out, find, and return a specific reference based on its data (elem)
      *
      * @pre elem != null
      * @param elem : the element attempting to be found
-     * @return reference to element x within tree such that elem.equals(x) is true.
+     * @return reference to the element x within tree at the same coordinates as elem.
      *       returns null otherwise
      */
     public T find(T elem)
     {
-        // simply call the more robust find
-        return this.find(elem, root,  this.xMin, this.xMax, this.yMin, this.yMax);
+        // holds the match, filled in by the visitor
+        ArrayList<T> match = new ArrayList<T>(1);
+
+        // region of the single point, duplicates share one element so the first hit is the only one
+        this.forEachInRegion(elem.getX(), elem.getX(), elem.getY(), elem.getY(), curr ->
+        {
+            match.add(curr);
+            return false;
+        });
+
+        // finale return!
+        return match.isEmpty() ? null : match.get(0);
     }
 
     /**
@@ -386,140 +976,406 @@ public class prQuadTree< T extends Compare2D<? super T> >
      */
     public ArrayList<T> find(long xLo, long xHi, long yLo, long yHi)
     {
-        // simply call the MOST robust find
-        return this.findNoElem(this.root, xLo, xHi, yLo, yHi);
+        // one list for the whole query, the visitor never stops early (add() is always true)
+        ArrayList<T> returnList = new ArrayList<T>();
+        this.forEachInRegion(xLo, xHi, yLo, yHi, returnList::add);
+
+        // finale return!
+        return returnList;
     }
 
     /**
-     * A helper method to find() that will recursively travel and return a specific node based
-     * upon its element
+     * MOST ROBUST FIND METHOD
      *
-     * @param elem : the data point of the node to be returned
-     * @param sRoot : the root at the given recursive iteration
-     * @param xLo : coordinates
+     * hands every element lying within the specified boundaries to the visitor, in tree order.
+     * the visitor returns true to keep going or false to end the query early. nothing is
+     * collected or allocated along the way, so the caller decides what (if anything) to keep
+     *
+     * @param xLo : coordinates of the region
      * @param xHi
      * @param yLo
      * @param yHi
+     * @param visitor : called once per element in the region
      *
-     * @return the node that corresponds to the element
+     * @return true if every element in the region was visited, false if the visitor stopped early
      */
-    private T find(T elem, prQuadNode sRoot, long xLo, long xHi, long yLo, long yHi)
+    public boolean forEachInRegion(long xLo, long xHi, long yLo, long yHi, Predicate<? super T> visitor)
     {
-        // call other recursive helper method
-        ArrayList<T> elementsList = this.findNoElem(sRoot, xLo, xHi, yLo, yHi);
+        // the whole query runs on the tree as it is now, later writes publish a new root
+        prQuadNode top = this.root;
 
-        // initialize the T value to be updated and returned
-        T returnElem;
-
-        System.out.println(elementsList.toString());
-        // update returnElem so long as it is valid
-        if (elementsList.indexOf(elem) >= 0)
-        {
-            returnElem = elementsList.get(elementsList.indexOf(elem));
-        }
-        else
+        // empty tree, or a region that misses the world entirely
+        if (top == null || (xLo > this.xMax) || (yLo > this.yMax) || (xHi < this.xMin) || (yHi < this.yMin))
         {
-            returnElem = null;
+            return true;
         }
 
+        // start the descent with the world as the node bounds
+        long[] visits = new long[1];
+        boolean finished = this.visitRegion(top, this.xMin, this.xMax, this.yMin, this.yMax, xLo, xHi, yLo, yHi,
+            visitor, visits);
+        this.countVisits(visits[0]);
+
         // finale return!
-        return returnElem;
+        return finished;
     }
 
     /**
-     * MOST ROBUST FIND METHOD
-     *
-     * used by all find methods, returns an ArrayList of nodes so long as they are within
-     * the specified boundaries. Utilizes recursion to perform its behavior
+     * recursive helper for forEachInRegion(). node bounds are split with the same midpoints
+     * insert() uses, and a child is only entered if the region reaches its side of the midpoints
      *
      * @param sRoot : root that operations are based around
      *
-     * @param xLo : coordinates
+     * @param nodeXLo : bounds of sRoot
+     * @param nodeXHi
+     * @param nodeYLo
+     * @param nodeYHi
+     *
+     * @param xLo : coordinates of the region
      * @param xHi
      * @param yLo
      * @param yHi
      *
-     * @return returnList : a list of nodes within the specified boundaries
+     * @param visitor : called once per element in the region
+     * @param visits : nodes opened so far by this query, in visits[0]
+     *
+     * @return false if the visitor stopped early
      */
-    private ArrayList<T> findNoElem(prQuadNode sRoot, long xLo, long xHi, long yLo, long yHi)
+    private boolean visitRegion(prQuadNode sRoot, long nodeXLo, long nodeXHi, long nodeYLo, long nodeYHi,
+        long xLo, long xHi, long yLo, long yHi, Predicate<? super T> visitor, long[] visits)
     {
-        // ---------------------- SETUP -------------------------------------------------------
-        // create the list to be returned
-        ArrayList<T> returnList = new ArrayList<T>();
-
-        // if its null, simply return empty list
+        // empty quadrant
         if (sRoot == null)
         {
-            return returnList;
+            return true;
         }
+        visits[0]++;
 
-        // ----------------- FINDING BEGINS --------------------------------------------------
-        // if the point is in the world (VALID POINT)
-        if (!((xLo > this.xMax) || (yLo > this.yMax) || (xHi < this.xMin) || (yHi < this.yMin)))
+        // ------------- INTERNAL NODE ----------------------------------------------------
+        if (sRoot.getClass().equals(prQuadInternal.class))
         {
+            prQuadInternal babyInternal = (prQuadInternal) sRoot;
 
-            // ------------- INTERNAL NODE ----------------------------------------------------
-            if (sRoot.getClass().equals(prQuadInternal.class))
+            // same midpoints as internalInsert()
+            long middleX = ((nodeXHi + nodeXLo) / 2);
+            long middleY = ((nodeYHi + nodeYLo) / 2);
+
+            // directionFrom() sends everything NE of a (0, 0) midpoint, so that quadrant
+            // can hold points from anywhere in the node
+            boolean origin = (middleX == 0 && middleY == 0);
+
+            // points on a midpoint line may sit on either side of it, so the tests are inclusive
+
+            // North East
+            if ((origin || (xHi >= middleX && yHi >= middleY)) &&
+                !this.visitRegion(babyInternal.NE, middleX, nodeXHi, middleY, nodeYHi, xLo, xHi, yLo, yHi, visitor, visits))
+            {
+                return false;
+            }
+
+            // South East
+            if ((xHi >= middleX && yLo <= middleY) &&
+                !this.visitRegion(babyInternal.SE, middleX, nodeXHi, nodeYLo, middleY, xLo, xHi, yLo, yHi, visitor, visits))
             {
-                // perform the cast so that we may access internal sRoot properties
-                // unchecked is fine due to condition above...
-                prQuadInternal babyInternal = (prQuadInternal) sRoot;
+                return false;
+            }
 
-                // midpoint calculations for region cases
-                long middleX = ((xHi + xLo) / 2);
-                long middleY = ((yHi + yLo) / 2);
+            // South West
+            if ((xLo <= middleX && yLo <= middleY) &&
+                !this.visitRegion(babyInternal.SW, nodeXLo, middleX, nodeYLo, middleY, xLo, xHi, yLo, yHi, visitor, visits))
+            {
+                return false;
+            }
 
-                // --------- QUADRANT ARRAYLIST BUILDING ------------------------------------
-                // the following will recursively delve into a quadrant (found by conditional calculations
-                // with middleX, middleY) and add the nodes found to an ArrayList.
+            // North West
+            if ((xLo <= middleX && yHi >= middleY) &&
+                !this.visitRegion(babyInternal.NW, nodeXLo, middleX, middleY, nodeYHi, xLo, xHi, yLo, yHi, visitor, visits))
+            {
+                return false;
+            }
 
-                // North East
-                if ((!((middleX > this.xMax) || (middleY > this.yMax) || (xHi < this.xMin) || (yHi < this.yMin))))
-                {
-                    returnList.addAll(this.findNoElem(babyInternal.NE, xLo, xHi, yLo, yHi));
-                }
+            return true;
+        }
 
-                // South East
-                if ((!((middleX > this.xMax) || (yLo > this.yMax) || (xHi < this.xMin) || (middleY < this.yMin))))
+        // --------------- LEAF NODE ------------------------------------------------------
+        prQuadLeaf leafNode = (prQuadLeaf) sRoot;
+
+        // hand over every element of the bucket that lies within the region (inBox)
+        for (int idx = 0; idx < leafNode.size; idx++)
+        {
+            T curr = leafNode.Elements.get(idx);
+            if (curr.inBox(xLo, xHi, yLo, yHi) && !visitor.test(curr))
+            {
+                return false;
+            }
+        }
+
+        // finale return!
+        return true;
+    }
+    
+    // ---------------------------------- NEAREST ---------------------------------------------
+    /**
+     * an entry of the best-first search queue, either a node still to be opened or an element
+     * waiting to be handed out. elements are queued by their own distance, nodes by the
+     * distance to the closest point of the area they can hold
+     */
+    private class nearCandidate
+    {
+        prQuadNode node; // null for an element
+        T elem; // null for a node
+        long distance; // squared distance from the query point
+
+        // bounds the node was built with (its midpoints come from these)
+        long xLo, xHi, yLo, yHi;
+
+        // area the node's elements can actually lie in, used for the distance
+        long reachXLo, reachXHi, reachYLo, reachYHi;
+    }
+
+    /**
+     * simple getter for the number of nodes find(), forEachInRegion() and the nearest
+     * searches have opened
+     *
+     * @return the node visit count, over every thread
+     */
+    public long nodesVisited()
+    {
+        return nodesVisited.sum();
+    }
+
+    /**
+     * simple getter for the number of nodes the calling thread's queries have opened. the
+     * difference across a query is that query's own count, whatever other threads are doing
+     *
+     * @return the node visit count of this thread
+     */
+    public long threadNodesVisited()
+    {
+        return threadVisits.get()[0];
+    }
+
+    /**
+     * adds a finished query's node visits to the counters
+     */
+    private void countVisits(long visits)
+    {
+        nodesVisited.add(visits);
+        threadVisits.get()[0] += visits;
+    }
+
+    /**
+     * Method to find the k elements closest to a point
+     *
+     * @param x : point x value
+     * @param y : point y value
+     * @param k : number of elements wanted
+     * @param maxRadius : elements further than this are ignored; negative for no limit
+     * @return up to k elements, closest first
+     */
+    public ArrayList<T> findNearest(long x, long y, int k, long maxRadius)
+    {
+        // the visitor stops once the list is full
+        ArrayList<T> returnList = new ArrayList<T>(Math.max(0, k));
+        if (k > 0)
+        {
+            this.forEachNearest(x, y, maxRadius, curr -> returnList.add(curr) && returnList.size() < k);
+        }
+
+        // finale return!
+        return returnList;
+    }
+
+    /**
+     * MOST ROBUST NEAREST METHOD
+     *
+     * best-first search: hands elements to the visitor in order of increasing distance from
+     * the point until the visitor returns false or maxRadius is passed. nodes sit in a priority
+     * queue keyed by the distance from the point to the closest spot they cover, so a node is
+     * only opened once everything nearer than it has already been handed out. the caller can
+     * skip elements it does not want and keep going, which is how a filtered top-k is built
+     *
+     * distances are straight line distances in the units of the tree's coordinates
+     *
+     * @param x : point x value
+     * @param y : point y value
+     * @param maxRadius : elements further than this are not visited; negative for no limit
+     * @param visitor : called once per element, nearest first
+     *
+     * @return true if every element within maxRadius was visited, false if the visitor stopped early
+     */
+    public boolean forEachNearest(long x, long y, long maxRadius, Predicate<? super T> visitor)
+    {
+        // the whole search runs on the tree as it is now, later writes publish a new root
+        prQuadNode top = this.root;
+
+        // nothing stored
+        if (top == null)
+        {
+            return true;
+        }
+
+        // compare squared distances, no square roots needed
+        // (a radius too large to square is the same as no limit)
+        long limit = (maxRadius < 0 || maxRadius > 3037000499L) ? Long.MAX_VALUE : maxRadius * maxRadius;
+
+        // closest first
+        PriorityQueue<nearCandidate> queue = new PriorityQueue<nearCandidate>(
+            Comparator.comparingLong((nearCandidate candidate) -> candidate.distance));
+
+        // the root covers the whole world
+        nearCandidate start = new nearCandidate();
+        start.node = top;
+        start.xLo = start.reachXLo = this.xMin;
+        start.xHi = start.reachXHi = this.xMax;
+        start.yLo = start.reachYLo = this.yMin;
+        start.yHi = start.reachYHi = this.yMax;
+        start.distance = distanceToArea(x, y, start.reachXLo, start.reachXHi, start.reachYLo, start.reachYHi);
+        queue.add(start);
+
+        // nodes opened by this search
+        long visits = 0;
+        try
+        {
+            while (!queue.isEmpty())
+            {
+                nearCandidate curr = queue.poll();
+
+                // everything left in the queue is at least this far away
+                if (curr.distance > limit)
                 {
-                    returnList.addAll(this.findNoElem(babyInternal.SE, xLo, xHi, yLo, yHi));
+                    return true;
                 }
 
-                // South West
-                if ((!((xLo > this.xMax) || (yLo > this.yMax) || (middleX < this.xMin) || (middleY < this.yMin))))
+                // ------------- ELEMENT ----------------------------------------------------------
+                if (curr.node == null)
                 {
-                    returnList.addAll(this.findNoElem(babyInternal.SW, xLo, xHi, yLo, yHi));
+                    if (!visitor.test(curr.elem))
+                    {
+                        return false;
+                    }
                 }
 
-                // North West
-                if ((!((xLo > this.xMax) || (middleY > this.yMax) || (middleX < this.xMin) || (yHi < this.yMin))))
+                // ------------- INTERNAL NODE ----------------------------------------------------
+                else if (curr.node.getClass().equals(prQuadInternal.class))
                 {
-                    returnList.addAll(this.findNoElem(babyInternal.NW, xLo, xHi, yLo, yHi));
-                }
-            }
+                    visits++;
+                    prQuadInternal babyInternal = (prQuadInternal) curr.node;
 
-            // --------------- LEAF NODE ------------------------------------------------------
-            if (sRoot.getClass().equals(prQuadLeaf.class))
-            {
-                // perform the cast so that we may access leaf sRoot properties
-                prQuadLeaf leafNode = (prQuadLeaf) sRoot;
+                    // same midpoints as internalInsert()
+                    long middleX = ((curr.xHi + curr.xLo) / 2);
+                    long middleY = ((curr.yHi + curr.yLo) / 2);
 
-                // iterate through elements and check if they are in the specified region
-                for (int idx = 0; idx < leafNode.size; idx++)
+                    // directionFrom() sends everything NE of a (0, 0) midpoint, so that quadrant
+                    // can hold anything its parent could
+                    boolean origin = (middleX == 0 && middleY == 0);
+
+                    // North East
+                    queueChild(queue, babyInternal.NE, x, y, middleX, curr.xHi, middleY, curr.yHi,
+                        origin ? curr.reachXLo : Math.max(curr.reachXLo, middleX), curr.reachXHi,
+                        origin ? curr.reachYLo : Math.max(curr.reachYLo, middleY), curr.reachYHi);
+
+                    // South East
+                    queueChild(queue, babyInternal.SE, x, y, middleX, curr.xHi, curr.yLo, middleY,
+                        Math.max(curr.reachXLo, middleX), curr.reachXHi, curr.reachYLo, Math.min(curr.reachYHi, middleY));
+
+                    // South West
+                    queueChild(queue, babyInternal.SW, x, y, curr.xLo, middleX, curr.yLo, middleY,
+                        curr.reachXLo, Math.min(curr.reachXHi, middleX), curr.reachYLo, Math.min(curr.reachYHi, middleY));
+
+                    // North West
+                    queueChild(queue, babyInternal.NW, x, y, curr.xLo, middleX, middleY, curr.yHi,
+                        curr.reachXLo, Math.min(curr.reachXHi, middleX), Math.max(curr.reachYLo, middleY), curr.reachYHi);
+                }
+
+                // --------------- LEAF NODE ------------------------------------------------------
+                else
                 {
-                    // add to the list if it is found to be within region (inBox)
-                    if (leafNode.Elements.get(idx).inBox(xLo, xHi, yLo, yHi))
+                    visits++;
+                    prQuadLeaf leafNode = (prQuadLeaf) curr.node;
+
+                    // elements go back in the queue so they come out in distance order
+                    for (int idx = 0; idx < leafNode.size; idx++)
                     {
-                        returnList.add(leafNode.Elements.get(idx));
+                        T elem = leafNode.Elements.get(idx);
+                        long distance = distanceToArea(x, y, elem.getX(), elem.getX(), elem.getY(), elem.getY());
+                        if (distance <= limit)
+                        {
+                            nearCandidate candidate = new nearCandidate();
+                            candidate.elem = elem;
+                            candidate.distance = distance;
+                            queue.add(candidate);
+                        }
                     }
                 }
             }
+
+            // finale return!
+            return true;
+        }
+        finally
+        {
+            this.countVisits(visits);
         }
+    }
 
-        // finale return!
-        return returnList;
+    /**
+     * helper for forEachNearest() that queues a child node, empty quadrants are skipped
+     *
+     * @param queue : the search queue
+     * @param child : the child node, may be null
+     * @param x : query point
+     * @param y
+     * @param xLo : bounds the child was built with
+     * @param xHi
+     * @param yLo
+     * @param yHi
+     * @param reachXLo : area the child's elements can lie in
+     * @param reachXHi
+     * @param reachYLo
+     * @param reachYHi
+     */
+    private void queueChild(PriorityQueue<nearCandidate> queue, prQuadNode child, long x, long y,
+        long xLo, long xHi, long yLo, long yHi, long reachXLo, long reachXHi, long reachYLo, long reachYHi)
+    {
+        if (child == null)
+        {
+            return;
+        }
+
+        nearCandidate candidate = new nearCandidate();
+        candidate.node = child;
+        candidate.xLo = xLo;
+        candidate.xHi = xHi;
+        candidate.yLo = yLo;
+        candidate.yHi = yHi;
+        candidate.reachXLo = reachXLo;
+        candidate.reachXHi = reachXHi;
+        candidate.reachYLo = reachYLo;
+        candidate.reachYHi = reachYHi;
+        candidate.distance = distanceToArea(x, y, reachXLo, reachXHi, reachYLo, reachYHi);
+        queue.add(candidate);
     }
-    
+
+    /**
+     * squared distance from a point to the closest spot of a rectangle (0 if it is inside)
+     *
+     * @param x : the point
+     * @param y
+     * @param xLo : the rectangle
+     * @param xHi
+     * @param yLo
+     * @param yHi
+     * @return the squared distance
+     */
+    private static long distanceToArea(long x, long y, long xLo, long xHi, long yLo, long yHi)
+    {
+        long dx = (x < xLo) ? xLo - x : ((x > xHi) ? x - xHi : 0);
+        long dy = (y < yLo) ? yLo - y : ((y > yHi) ? y - yHi : 0);
+
+        return dx * dx + dy * dy;
+    }
+
     /**
      * call on to string that will enact the recursive toString() solution
      */
@@ -0,0 +1,486 @@
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * open addressing hash table used as the GIS feature name index
+ *
+ * holds the same kind of entries as hashtable (a feature name key and the file offsets of
+ * the records that MATCH that name), but stores them inline in flat arrays rather than in
+ * chains, so a lookup hashes to the home slot and walks only the probe sequence from there
+ *
+ * @author mason
+ * @version 5.2.22
+ *
+ * Implements a generic hash table using linear probing over a flat Object array
+ * for the physical table.
+ *
+ * The hash value of every stored element is cached in a parallel int array. Probing
+ * compares cached hashes before calling equals(), and resizing reuses the cached values
+ * instead of calling Hash() again.
+ *
+ * The number of slots is always a power of two (256 by default, configurable via the class
+ * constructor) so the home slot is found with a mask rather than a modulus.
+ *
+ * The table is doubled when the load factor exceeds the load limit (defaulting to 0.7, but
+ * configurable via the class constructor). Open addressing needs free slots to terminate
+ * a probe, so limits at or above 1.0 are clamped to maxLoadLimit.
+ *
+ * The doubling is incremental: the old arrays are kept next to the new ones and every insert
+ * moves a few of the old slots across, in slot order, so no single insert pays for moving the
+ * whole table. The old arrays are left as they are while the move runs, so their probe
+ * sequences stay intact; lookups probe the new arrays first and then the old ones, where an
+ * element not moved yet can still be found. The step is sized from the load limit so the old
+ * arrays are done with before the next doubling is due.
+ *
+ * Elements inserted to the table must implement the Hashable interface:
+ * public int Hash();
+ *
+ * The table never looks inside its elements. Callers that need to combine a duplicate with
+ * the element already stored (e.g. merging file offsets) either use merge(), which stores the
+ * combined element in the slot of the old one, or use putIfAbsent() and update the returned
+ * element themselves.
+ */
+public class probeTable<T extends Hashable<T> > implements nameIndex<T>
+{
+    private Object[] slots; // physical basis for the hash table, null means empty
+    private int[] hashes; // cached Hash() value of the element in the same slot
+    private int numElements = 0; // number of occupied slots
+    private int maxProbe = 0; // longest probe sequence taken by a stored element
+    private double loadLimit = 0.7; // table resize trigger
+    private final int defaultTableSize = 256; // default number of table slots
+    private static final double maxLoadLimit = 0.9; // highest usable load limit
+
+    // INCREMENTAL REHASHING
+    private Object[] oldSlots = null; // arrays being moved into slots, null when none
+    private int[] oldHashes = null;
+    private int migrated = 0; // old slots moved so far
+    private int migrateStep; // old slots moved per insert
+    private static final int minMigrateStep = 2; // fewest old slots moved per insert
+    private gisEvents.tableRehash rehashEvent; // open while a doubling is in progress
+    private final LongAdder lookups = new LongAdder(); // find() calls, find() may run on several threads
+    private final LongAdder probes = new LongAdder(); // slots examined by find()
+
+    /**
+     * Constructs an empty hash table with the following properties:
+     * Pre:
+     * - size is the user's desired number of slots; null for default
+     * - ldLimit is user's desired load factor limit for resizing the table;
+     * null for the default
+     * Post:
+     * - table has at least size slots (rounded up to a power of two), 256 slots if
+     * size == null
+     * - loadLimit is set to default (0.7) if ldLimit == null
+     */
+    public probeTable(Integer size, Double ldLimit)
+    {
+        // size handling
+        int capacity = defaultTableSize;
+        if (size != null && size > 0)
+        {
+            capacity = tableSizeFor(size);
+        }
+
+        // ldLimit handling
+        if (ldLimit != null && ldLimit > 0)
+        {
+            loadLimit = Math.min(ldLimit, maxLoadLimit);
+        }
+
+        // a doubling is due after another capacity * loadLimit inserts, by then all
+        // capacity old slots must have been moved
+        migrateStep = Math.max(minMigrateStep, (int)Math.ceil(1 / loadLimit) + 1);
+
+        // allocate empty table
+        slots = new Object[capacity];
+        hashes = new int[capacity];
+    }
+
+    /**
+     * Inserts elem into the first free slot of its probe sequence, unless the table
+     * already contains a matching element (according to the equals() method for the
+     * user's data type).
+     *
+     * Pre:
+     * - elem is a valid user data object
+     *
+     * Post:
+     * - elem is inserted unless it is a duplicate
+     * - if the resulting load factor exceeds the load limit, the
+     * table is doubled and its elements are moved over the inserts that follow
+     *
+     * Returns:
+     * true if elem has been inserted, false if it was a duplicate
+     */
+    public boolean insert(T elem)
+    {
+        return putIfAbsent(elem) == null;
+    }
+
+    /**
+     * Inserts elem unless a matching element is already stored, in which case the stored
+     * element is returned and the table is left unchanged. This lets the caller merge a
+     * duplicate into the stored element with a single probe.
+     *
+     * Pre:
+     * - elem is a valid user data object
+     *
+     * Returns:
+     * the matching element already in the table; null if elem has been inserted
+     */
+    public T putIfAbsent(T elem)
+    {
+        return merge(elem, null);
+    }
+
+    /**
+     * Inserts elem unless a matching element is already stored, in which case the stored
+     * element is replaced by merger.apply(stored, elem), in the same slot. Neither element
+     * is changed, so a reader holding the old element keeps an unchanging view of it.
+     *
+     * Pre:
+     * - elem is a valid user data object
+     * - merger is null to leave a duplicate's stored element as it is
+     *
+     * Returns:
+     * the element now stored for a duplicate; null if elem has been inserted
+     */
+    @SuppressWarnings("unchecked")
+    public T merge(T elem, BinaryOperator<T> merger)
+    {
+        // move a few more slots of the old arrays across, if a doubling is in progress
+        migrate(migrateStep);
+
+        // home slot
+        int hash = elem.Hash();
+        int mask = slots.length - 1;
+        int idx = hash & mask;
+        int probe = 0;
+
+        // walk the probe sequence until a match or an empty slot
+        while (slots[idx] != null)
+        {
+            // cached hash comparison skips most equals() calls
+            if (hashes[idx] == hash && slots[idx].equals(elem))
+            {
+                if (merger != null)
+                {
+                    slots[idx] = merger.apply((T)slots[idx], elem);
+                }
+                return (T)slots[idx];
+            }
+
+            idx = (idx + 1) & mask;
+            probe++;
+        }
+
+        // during a doubling the element may still be in the old arrays, in a slot not moved
+        // yet (a moved element would have been found above), so the merged element is
+        // stored there and moved across with the rest
+        if (oldSlots != null)
+        {
+            int at = search(oldSlots, oldHashes, hash, elem);
+            if (at >= 0)
+            {
+                if (merger != null)
+                {
+                    oldSlots[at] = merger.apply((T)oldSlots[at], elem);
+                }
+                return (T)oldSlots[at];
+            }
+        }
+
+        // actual insertion into the empty slot
+        slots[idx] = elem;
+        hashes[idx] = hash;
+        numElements++;
+
+        // max probe calculation
+        if (probe > maxProbe)
+        {
+            maxProbe = probe;
+        }
+
+        // LOAD FACTOR & REHASHING
+        if ((double)numElements / (double)slots.length > loadLimit)
+        {
+            grow();
+        }
+
+        // inserted
+        return null;
+    }
+
+    /** Searches the table for an element that matches elem (according to
+     * the equals() method for the user's data type).
+     *
+     * Pre:
+     * - elem is a valid user data object
+     * Returns:
+     * reference to the matching element; null if no match is found
+     */
+    @SuppressWarnings("unchecked")
+    public T find(T elem)
+    {
+        // home slot
+        int hash = elem.Hash();
+        int mask = slots.length - 1;
+        int idx = hash & mask;
+        int probe = 0;
+        T found = null;
+
+        // an empty slot ends the probe sequence
+        while (slots[idx] != null)
+        {
+            probe++;
+            if (hashes[idx] == hash && slots[idx].equals(elem))
+            {
+                found = (T)slots[idx];
+                break;
+            }
+
+            idx = (idx + 1) & mask;
+        }
+
+        // during a doubling the element may still be in the old arrays
+        if (found == null && oldSlots != null)
+        {
+            int at = search(oldSlots, oldHashes, hash, elem);
+            if (at >= 0)
+            {
+                found = (T)oldSlots[at];
+            }
+        }
+
+        lookups.increment();
+        probes.add(probe);
+
+        // null if no match was found
+        return found;
+    }
+
+    /**
+     * simple getter for size of table
+     *
+     * @return the table size
+     */
+    public int getSize()
+    {
+        return slots.length;
+    }
+
+    /**
+     * simple getter for the number of stored elements
+     *
+     * @return the number of elements
+     */
+    public int numElements()
+    {
+        return numElements;
+    }
+
+    /**
+     * simple getter for the number of lookups
+     *
+     * @return the number of find() calls
+     */
+    public long lookups()
+    {
+        return lookups.sum();
+    }
+
+    /**
+     * simple getter for the number of occupied slots examined by lookups
+     *
+     * @return the probe count
+     */
+    public long probes()
+    {
+        return probes.sum();
+    }
+
+    /**
+     * performs the given action on every stored element, in slot order
+     *
+     * @param action : the action to perform
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> action)
+    {
+        for (int idx = 0; idx < slots.length; idx++)
+        {
+            if (slots[idx] != null)
+            {
+                action.accept((T)slots[idx]);
+            }
+        }
+
+        // old slots not moved yet
+        if (oldSlots != null)
+        {
+            for (int idx = migrated; idx < oldSlots.length; idx++)
+            {
+                if (oldSlots[idx] != null)
+                {
+                    action.accept((T)oldSlots[idx]);
+                }
+            }
+        }
+    }
+
+    /** Writes a formatted display of the hash table contents.
+     */
+    public String display()
+    {
+        // every element in its final slot
+        migrate(Integer.MAX_VALUE);
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("Number of elements: " + numElements + "\n");
+        sb.append("Number of slots: " + slots.length + "\n");
+        sb.append("Longest probe sequence: " + maxProbe + "\n");
+        sb.append("Load limit: " + loadLimit + "\n");
+        sb.append("\n");
+
+        sb.append("Slot Contents\n");
+
+        for (int idx = 0; idx < slots.length; idx++)
+        {
+            if (slots[idx] != null)
+            {
+                sb.append(String.format("%5d: %s\n", idx, slots[idx].toString()));
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * doubles the table. the new arrays start out empty and the old ones are moved across by
+     * migrate(), a few slots per insert
+     */
+    private void grow()
+    {
+        // the step keeps up with the inserts, so the last doubling is already done by now;
+        // make sure of it before starting another
+        migrate(Integer.MAX_VALUE);
+
+        rehashEvent = new gisEvents.tableRehash();
+        rehashEvent.begin();
+
+        oldSlots = slots;
+        oldHashes = hashes;
+        migrated = 0;
+
+        slots = new Object[oldSlots.length * 2];
+        hashes = new int[oldSlots.length * 2];
+        maxProbe = 0;
+    }
+
+    /**
+     * moves up to count slots of the old arrays into the current ones using the cached hash
+     * values, and drops the old arrays once every slot has been moved
+     *
+     * @param count : number of old slots to move
+     */
+    private void migrate(int count)
+    {
+        // no doubling in progress
+        if (oldSlots == null)
+        {
+            return;
+        }
+
+        int mask = slots.length - 1;
+
+        // reinsert each occupied slot, no duplicate checks needed. the old slot keeps its
+        // element, later probes of the old arrays may still pass through it
+        int end = (int)Math.min(oldSlots.length, (long)migrated + count);
+        for (; migrated < end; migrated++)
+        {
+            if (oldSlots[migrated] == null)
+            {
+                continue;
+            }
+
+            int idx = oldHashes[migrated] & mask;
+            int probe = 0;
+            while (slots[idx] != null)
+            {
+                idx = (idx + 1) & mask;
+                probe++;
+            }
+
+            slots[idx] = oldSlots[migrated];
+            hashes[idx] = oldHashes[migrated];
+
+            if (probe > maxProbe)
+            {
+                maxProbe = probe;
+            }
+        }
+
+        // done, drop the old arrays
+        if (migrated == oldSlots.length)
+        {
+            if (rehashEvent.shouldCommit())
+            {
+                rehashEvent.oldSlots = oldSlots.length;
+                rehashEvent.newSlots = slots.length;
+                rehashEvent.elements = numElements;
+                rehashEvent.commit();
+            }
+
+            oldSlots = null;
+            oldHashes = null;
+            rehashEvent = null;
+            migrated = 0;
+        }
+    }
+
+    /**
+     * walks the probe sequence of one pair of arrays for an element that matches elem
+     *
+     * @param table : the slots
+     * @param tableHashes : their cached hash values
+     * @param hash : elem.Hash()
+     * @param elem : the element looked for
+     * @return the slot of the matching element; -1 if no match is found
+     */
+    private static int search(Object[] table, int[] tableHashes, int hash, Object elem)
+    {
+        int mask = table.length - 1;
+        int idx = hash & mask;
+
+        // a small table can fill up completely before it is doubled, so the walk ends after
+        // every slot has been seen as well as at an empty slot
+        for (int seen = 0; seen < table.length && table[idx] != null; seen++)
+        {
+            if (tableHashes[idx] == hash && table[idx].equals(elem))
+            {
+                return idx;
+            }
+
+            idx = (idx + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * rounds a requested table size up to the next power of two
+     *
+     * @param size : requested number of slots
+     * @return the power of two table size
+     */
+    private static int tableSizeFor(int size)
+    {
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size)
+        {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
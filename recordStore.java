@@ -0,0 +1,327 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * read side of the GIS database file. maps the file into memory and hands out records
+ * by file offset, so fetching a record is a memory read instead of a seek() and a
+ * byte-at-a-time readLine()
+ *
+ * a single MappedByteBuffer can address at most 2 GB, so the file is mapped as a list of
+ * fixed size segments. a record that straddles two segments is copied into a small heap
+ * buffer; every other record is returned as a zero-copy slice of its segment
+ *
+ * records are the raw bytes of one database line without its line terminator. the database
+ * is written with writeBytes(), one byte per char, so text is decoded as ISO-8859-1 to give
+ * back exactly the String that readLine() used to return
+ *
+ * the database grows while imports run, so the mapping is extended lazily the first time an
+ * offset past the mapped length is requested
+ *
+ * given a blockCache, the store maps nothing and serves every record out of the cache's
+ * fixed set of file blocks instead. records then always come back as small heap copies
+ *
+ * record() may be called from several threads at once, even while an import appends to the
+ * database. the segments are an array that is never changed once published: refresh() builds
+ * a new one and swaps it in, so a reader that refreshes lazily never disturbs another reader
+ * part way through a lookup. the mapping may have been made while a record was half written
+ * (a background import, with queries running); a record that runs into the end of the
+ * mapping is looked up again once the file has grown past it. GIS refreshes after every
+ * import, so queries normally find the mapping up to date
+ *
+ * @author mason gelletly
+ * @version 5.16.22
+ */
+public class recordStore
+{
+    // size of one mapped segment (1 GB)
+    private static final long segmentSize = 1L << 30;
+
+    // channel of the database file
+    private FileChannel channel;
+
+    // mapped segments, in file order. replaced as a whole, never changed in place
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    // number of bytes currently covered by the segments (or known to the cache), always
+    // published after the segments covering them
+    private volatile long mappedLength = 0;
+
+    // block cache serving the records in place of the mapping, null when mapped
+    private blockCache cache;
+
+    // records handed out and their total length, record() may run on several threads
+    private final LongAdder recordsRead = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+
+    /**
+     * constructor for the store, maps whatever is currently in the database file
+     *
+     * @param database : the open database file
+     * @throws IOException
+     */
+    public recordStore(RandomAccessFile database) throws IOException
+    {
+        this(database, null);
+    }
+
+    /**
+     * constructor for a store that reads through a block cache instead of mapping the file
+     *
+     * @param database : the open database file
+     * @param cache : cache over database's channel, null to map the file
+     * @throws IOException
+     */
+    public recordStore(RandomAccessFile database, blockCache cache) throws IOException
+    {
+        this.channel = database.getChannel();
+        this.cache = cache;
+        refresh();
+    }
+
+    /**
+     * extends the mapping to cover the current length of the database file. the last,
+     * partially filled segment is remapped, full segments are left alone
+     *
+     * @throws IOException
+     */
+    public synchronized void refresh() throws IOException
+    {
+        long fileLength = channel.size();
+
+        // cached reads only need the length, blocks at the old end are read again by the cache
+        if (cache != null)
+        {
+            if (fileLength < mappedLength)
+            {
+                cache.clear();
+            }
+            mappedLength = fileLength;
+            return;
+        }
+
+        // file was truncated (new run), drop every segment
+        MappedByteBuffer[] mapped = segments;
+        long length = mappedLength;
+        if (fileLength < length)
+        {
+            mapped = new MappedByteBuffer[0];
+            length = 0;
+        }
+
+        // nothing new to map (but a truncation still has to be published)
+        if (fileLength == length)
+        {
+            segments = mapped;
+            mappedLength = length;
+            return;
+        }
+
+        // drop the partial last segment so it is mapped again at its new length
+        int full = mapped.length;
+        if (full > 0 && mapped[full - 1].capacity() < segmentSize)
+        {
+            full--;
+            length -= mapped[full].capacity();
+        }
+
+        // map the remainder of the file segment by segment, into a new array
+        int count = (int)((fileLength + segmentSize - 1) / segmentSize);
+        MappedByteBuffer[] extended = Arrays.copyOf(mapped, count);
+        for (int idx = full; idx < count; idx++)
+        {
+            long size = Math.min(segmentSize, fileLength - length);
+            extended[idx] = channel.map(FileChannel.MapMode.READ_ONLY, length, size);
+            length += size;
+        }
+
+        // segments first, a reader that sees the new length then sees them too
+        segments = extended;
+        mappedLength = length;
+    }
+
+    /**
+     * returns the record that begins at the given offset. the returned buffer's position is
+     * the first byte of the record and its limit is the end of the record (the line
+     * terminator is excluded)
+     *
+     * @param offset : database offset of the record
+     * @return the record bytes
+     * @throws IOException if the offset lies outside the database file
+     */
+    public ByteBuffer record(long offset) throws IOException
+    {
+        ByteBuffer record = locate(offset);
+        recordsRead.increment();
+        bytesRead.add(record.remaining());
+
+        return record;
+    }
+
+    /**
+     * finds the record that begins at the given offset, see record()
+     */
+    private ByteBuffer locate(long offset) throws IOException
+    {
+        // offset past the mapping, the file may have grown since
+        if (offset >= mappedLength)
+        {
+            refresh();
+        }
+        long length = mappedLength;
+        if (offset < 0 || offset >= length)
+        {
+            throw new IOException("offset " + offset + " is outside the database file");
+        }
+
+        // served from the block cache
+        if (cache != null)
+        {
+            return cache.record(offset);
+        }
+
+        // locate the segment holding the start of the record
+        int segment = (int)(offset / segmentSize);
+        int start = (int)(offset % segmentSize);
+        MappedByteBuffer[] mapped = segments;
+        MappedByteBuffer buffer = mapped[segment];
+
+        // scan for the end of the line within this segment
+        for (int idx = start; idx < buffer.limit(); idx++)
+        {
+            byte curr = buffer.get(idx);
+            if (curr == '\n' || curr == '\r')
+            {
+                return buffer.duplicate().position(start).limit(idx).slice();
+            }
+        }
+
+        // last record of the file with no terminator, or one that straddles a segment
+        // boundary and is copied out
+        ByteBuffer record = (segment == mapped.length - 1)
+            ? buffer.duplicate().position(start).slice()
+            : straddling(mapped, length, offset);
+
+        // no terminator before the end of the mapping: if the file has grown since it was
+        // mapped, the rest of the record may be past the mapping, so map it and look again
+        if (offset + record.remaining() == length && channel.size() > length)
+        {
+            refresh();
+            return locate(offset);
+        }
+
+        return record;
+    }
+
+    /**
+     * copies a record that crosses one or more segment boundaries into a heap buffer
+     *
+     * @param mapped : the segments the record was located in
+     * @param length : number of bytes they cover
+     * @param offset : database offset of the record
+     * @return the record bytes
+     */
+    private static ByteBuffer straddling(MappedByteBuffer[] mapped, long length, long offset)
+    {
+        // find the length of the record first
+        long end = offset;
+        while (end < length)
+        {
+            byte curr = byteAt(mapped, end);
+            if (curr == '\n' || curr == '\r')
+            {
+                break;
+            }
+            end++;
+        }
+
+        // copy byte by byte, this only happens once per segment boundary
+        byte[] copy = new byte[(int)(end - offset)];
+        for (int idx = 0; idx < copy.length; idx++)
+        {
+            copy[idx] = byteAt(mapped, offset + idx);
+        }
+
+        return ByteBuffer.wrap(copy);
+    }
+
+    /**
+     * simple getter for the number of records read
+     *
+     * @return the record() call count
+     */
+    public long recordsRead()
+    {
+        return recordsRead.sum();
+    }
+
+    /**
+     * simple getter for the number of record bytes read
+     *
+     * @return the total length of the records returned by record()
+     */
+    public long bytesRead()
+    {
+        return bytesRead.sum();
+    }
+
+    /**
+     * simple getter for the block cache
+     *
+     * @return the cache, null if the file is mapped
+     */
+    public blockCache cache()
+    {
+        return cache;
+    }
+
+    /**
+     * reads a single byte of the mapped file
+     *
+     * @param mapped : the segments to read from
+     * @param offset : file offset
+     * @return the byte at that offset
+     */
+    private static byte byteAt(MappedByteBuffer[] mapped, long offset)
+    {
+        return mapped[(int)(offset / segmentSize)].get((int)(offset % segmentSize));
+    }
+
+    /**
+     * decodes a whole record into the String readLine() would have produced
+     *
+     * @param record : record returned by record()
+     * @return the record text
+     */
+    public static String decode(ByteBuffer record)
+    {
+        return decode(record, record.position(), record.limit());
+    }
+
+    /**
+     * encodes text the way the database holds it (one byte per char), e.g. to tokenize a
+     * record that was kept as a String
+     *
+     * @param record : the record text
+     * @return the record bytes
+     */
+    public static ByteBuffer encode(String record)
+    {
+        return ByteBuffer.wrap(record.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * ISO-8859-1 decode of an absolute range of a buffer
+     */
+    private static String decode(ByteBuffer record, int start, int end)
+    {
+        byte[] bytes = new byte[end - start];
+        record.get(start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
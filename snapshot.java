@@ -0,0 +1,512 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PrimitiveIterator;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * persistent image of the GIS indexes, written next to the database file once a run is done
+ * importing (at quit or the end of the script) so that a later run importing the same files
+ * can skip parsing them again
+ *
+ * the snapshot records which world it was built for and, in order, every file that was
+ * imported (path, length, last modified time and CRC32 of the contents), followed by the
+ * length and CRC32 of the database file it indexes. the payload holds the name index entries
+ * and the quadtree in node order, so loading is a straight sequential read with no parsing
+ * and no quadtree descents
+ *
+ * file layout (all DataOutput encodings):
+ *      magic, version
+ *      world arguments
+ *      import count, then path / length / modified / crc per import
+ *      database length, database crc
+ *      name count, then key / offset count / offsets per name (in original insertion order)
+ *      quadtree nodes in pre-order (0 = empty, 1 = internal, 2 = leaf with its entries)
+ *      crc of everything above
+ *
+ * @author mason gelletly
+ * @version 5.6.22
+ */
+public class snapshot
+{
+    // "GISS" and format version, bump the version whenever the layout changes
+    private static final int magic = 0x47495353;
+    private static final int version = 2;
+
+    // node tags for the quadtree section
+    private static final byte emptyTag = 0;
+    private static final byte internalTag = 1;
+    private static final byte leafTag = 2;
+
+    // I/O buffer size
+    private static final int bufferSize = 1 << 20;
+
+    /**
+     * fingerprint of one imported file
+     */
+    public static class sourceFile
+    {
+        String path;
+        long length;
+        long modified;
+        long crc;
+
+        /**
+         * takes the fingerprint of a file as it is on disk right now
+         *
+         * @param file : the imported file
+         * @throws IOException
+         */
+        public sourceFile(File file) throws IOException
+        {
+            path = file.getCanonicalPath();
+            length = file.length();
+            modified = file.lastModified();
+            crc = checksum(file, length);
+        }
+
+        /**
+         * read back constructor
+         */
+        private sourceFile(String path, long length, long modified, long crc)
+        {
+            this.path = path;
+            this.length = length;
+            this.modified = modified;
+            this.crc = crc;
+        }
+
+        /**
+         * true if the file still has the fingerprint recorded in the snapshot. length and
+         * modified time are compared first, the contents are only read when those match
+         *
+         * @param file : file named by the current import command
+         * @return true if it is the same file with the same contents
+         * @throws IOException
+         */
+        public boolean matches(File file) throws IOException
+        {
+            return file.isFile()
+                && file.getCanonicalPath().equals(path)
+                && file.length() == length
+                && file.lastModified() == modified
+                && checksum(file, length) == crc;
+        }
+    }
+
+    // header fields
+    private String world;
+    private ArrayList<sourceFile> imports = new ArrayList<sourceFile>();
+    private long databaseLength;
+    private long databaseCrc;
+
+    // file the header was read from
+    private File snapshotFile;
+
+    /**
+     * private constructor, see readHeader()
+     */
+    private snapshot(File snapshotFile)
+    {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * reads the header of a snapshot file
+     *
+     * @param snapshotFile : the snapshot file
+     * @return the snapshot header; null if there is no usable snapshot
+     */
+    public static snapshot readHeader(File snapshotFile)
+    {
+        if (!snapshotFile.isFile())
+        {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(snapshotFile), bufferSize)))
+        {
+            snapshot header = new snapshot(snapshotFile);
+            header.readHeader(in);
+            return header;
+        }
+        // missing, truncated or foreign file: no snapshot
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * getter for the world arguments the snapshot was built for
+     */
+    public String world()
+    {
+        return world;
+    }
+
+    /**
+     * getter for the number of imports covered by the snapshot
+     */
+    public int importCount()
+    {
+        return imports.size();
+    }
+
+    /**
+     * getter for the length of the database file the snapshot indexes
+     */
+    public long databaseLength()
+    {
+        return databaseLength;
+    }
+
+    /**
+     * checks a file against the import at the given position in the snapshot
+     *
+     * @param index : position of the import in the run
+     * @param file : the file being imported
+     * @return true if the snapshot imported the same file at that position
+     * @throws IOException
+     */
+    public boolean matchesImport(int index, File file) throws IOException
+    {
+        return index < imports.size() && imports.get(index).matches(file);
+    }
+
+    /**
+     * getter for the fingerprint of the import at the given position
+     *
+     * @param index : position of the import in the run
+     * @return the recorded fingerprint
+     */
+    public sourceFile importAt(int index)
+    {
+        return imports.get(index);
+    }
+
+    /**
+     * loads the indexes from the snapshot. the database file is checked against the length
+     * and checksum recorded in the header and the snapshot against its trailing checksum;
+     * nothing is modified unless all of them match
+     *
+     * @param database : the database file the indexes refer to
+     * @param tree : empty quadtree for the snapshot's world, its root is set on success
+     * @param table : empty name index, filled on success
+     * @return the loaded name index; null if the snapshot does not match
+     * @throws IOException
+     */
+    public nameIndex<dataEntry> load(RandomAccessFile database, prQuadTree<gisEntry> tree,
+        nameIndex<dataEntry> table)
+        throws IOException
+    {
+        // the database must be exactly the one the snapshot was taken of
+        if (database.length() != databaseLength
+            || checksum(database, databaseLength) != databaseCrc)
+        {
+            return null;
+        }
+
+        // the trailing checksum must match the rest of the snapshot file
+        long payloadLength = snapshotFile.length() - Long.BYTES;
+        if (payloadLength < 0)
+        {
+            return null;
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(snapshotFile, "r"))
+        {
+            raw.seek(payloadLength);
+            if (raw.readLong() != checksum(raw, payloadLength))
+            {
+                return null;
+            }
+        }
+
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(snapshotFile), bufferSize)))
+        {
+            // skip past the header, it was validated by readHeader()
+            readHeader(in);
+
+            // name index, reinserted in original order so the table layout is reproduced
+            int names = in.readInt();
+            for (int idx = 0; idx < names; idx++)
+            {
+                String key = in.readUTF();
+                int count = in.readInt();
+
+                dataEntry entry = new dataEntry(key, in.readLong());
+                for (int jdx = 1; jdx < count; jdx++)
+                {
+                    entry.addLocation(in.readLong());
+                }
+                table.insert(entry);
+            }
+
+            // quadtree nodes
+            tree.root = readNode(in, tree);
+            return table;
+        }
+    }
+
+    /**
+     * writes a snapshot of the current indexes. the file is written beside the target and
+     * renamed over it, so a crash never leaves a half written snapshot behind
+     *
+     * @param snapshotFile : the snapshot file
+     * @param world : world command arguments
+     * @param imported : every file imported so far, in order
+     * @param database : the database file
+     * @param tree : the quadtree
+     * @param table : the name index
+     * @throws IOException
+     */
+    public static void save(File snapshotFile, String world, ArrayList<sourceFile> imported,
+        RandomAccessFile database, prQuadTree<gisEntry> tree, nameIndex<dataEntry> table)
+        throws IOException
+    {
+        File temp = new File(snapshotFile.getPath() + ".tmp");
+
+        CRC32 crc = new CRC32();
+        try (CheckedOutputStream checked = new CheckedOutputStream(new FileOutputStream(temp), crc);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, bufferSize)))
+        {
+            // HEADER
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeUTF(world);
+            out.writeInt(imported.size());
+            for (sourceFile file : imported)
+            {
+                out.writeUTF(file.path);
+                out.writeLong(file.length);
+                out.writeLong(file.modified);
+                out.writeLong(file.crc);
+            }
+            long length = database.length();
+            out.writeLong(length);
+            out.writeLong(checksum(database, length));
+
+            // NAME INDEX
+            // the first offset of a name is where it was first inserted, so sorting on it
+            // restores the insertion order
+            ArrayList<dataEntry> entries = new ArrayList<dataEntry>(table.numElements());
+            table.forEach(entries::add);
+            entries.sort(Comparator.comparingLong(entry -> entry.locations.first()));
+
+            out.writeInt(entries.size());
+            for (dataEntry entry : entries)
+            {
+                out.writeUTF(entry.key);
+                out.writeInt(entry.locations.size());
+                for (PrimitiveIterator.OfLong offsets = entry.locations.iterator(); offsets.hasNext(); )
+                {
+                    out.writeLong(offsets.nextLong());
+                }
+            }
+
+            // QUADTREE
+            writeNode(out, tree.root);
+
+            // TRAILER
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+
+        Files.move(temp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * reads and validates the header fields
+     */
+    private void readHeader(DataInputStream in) throws IOException
+    {
+        if (in.readInt() != magic || in.readInt() != version)
+        {
+            throw new IOException("not a GIS snapshot of version " + version);
+        }
+
+        world = in.readUTF();
+
+        imports.clear();
+        int count = in.readInt();
+        for (int idx = 0; idx < count; idx++)
+        {
+            imports.add(new sourceFile(in.readUTF(), in.readLong(), in.readLong(), in.readLong()));
+        }
+
+        databaseLength = in.readLong();
+        databaseCrc = in.readLong();
+    }
+
+    /**
+     * recursive pre-order writer for the quadtree section
+     */
+    private static void writeNode(DataOutputStream out, prQuadTree<gisEntry>.prQuadNode node)
+        throws IOException
+    {
+        // empty child
+        if (node == null)
+        {
+            out.writeByte(emptyTag);
+        }
+        // internal node, children in a fixed order
+        else if (node instanceof prQuadTree.prQuadInternal)
+        {
+            prQuadTree<gisEntry>.prQuadInternal internal = (prQuadTree<gisEntry>.prQuadInternal)node;
+
+            out.writeByte(internalTag);
+            writeNode(out, internal.NW);
+            writeNode(out, internal.NE);
+            writeNode(out, internal.SE);
+            writeNode(out, internal.SW);
+        }
+        // leaf, bucket entries in bucket order
+        else
+        {
+            prQuadTree<gisEntry>.prQuadLeaf leaf = (prQuadTree<gisEntry>.prQuadLeaf)node;
+
+            out.writeByte(leafTag);
+            out.writeInt(leaf.size);
+            for (int idx = 0; idx < leaf.size; idx++)
+            {
+                gisEntry entry = leaf.Elements.get(idx);
+                out.writeLong(entry.getY());
+                out.writeLong(entry.getX());
+                out.writeInt(entry.getOffsets().size());
+                for (PrimitiveIterator.OfLong offsets = entry.getOffsets().iterator(); offsets.hasNext(); )
+                {
+                    out.writeLong(offsets.nextLong());
+                }
+            }
+        }
+    }
+
+    /**
+     * recursive pre-order reader for the quadtree section
+     */
+    private static prQuadTree<gisEntry>.prQuadNode readNode(DataInputStream in, prQuadTree<gisEntry> tree)
+        throws IOException
+    {
+        byte tag = in.readByte();
+
+        // empty child
+        if (tag == emptyTag)
+        {
+            return null;
+        }
+
+        // internal node
+        if (tag == internalTag)
+        {
+            prQuadTree<gisEntry>.prQuadInternal internal = tree.new prQuadInternal();
+            internal.NW = readNode(in, tree);
+            internal.NE = readNode(in, tree);
+            internal.SE = readNode(in, tree);
+            internal.SW = readNode(in, tree);
+            return internal;
+        }
+
+        // leaf
+        if (tag == leafTag)
+        {
+            prQuadTree<gisEntry>.prQuadLeaf leaf = tree.new prQuadLeaf();
+            int size = in.readInt();
+            for (int idx = 0; idx < size; idx++)
+            {
+                long lat = in.readLong();
+                long lon = in.readLong();
+                int count = in.readInt();
+
+                gisEntry entry = new gisEntry(lat, lon, in.readLong());
+                for (int jdx = 1; jdx < count; jdx++)
+                {
+                    entry.addOffset(in.readLong());
+                }
+                leaf.Elements.add(entry);
+            }
+            leaf.size = size;
+            return leaf;
+        }
+
+        throw new IOException("corrupt snapshot node tag " + tag);
+    }
+
+    /**
+     * CRC32 of the first length bytes of a file
+     */
+    private static long checksum(File file, long length) throws IOException
+    {
+        try (InputStream in = new FileInputStream(file))
+        {
+            return checksum(in, length);
+        }
+    }
+
+    /**
+     * CRC32 of the first length bytes of an open file, using positional reads so the
+     * file pointer is left untouched
+     */
+    private static long checksum(RandomAccessFile file, long length) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        FileChannel channel = file.getChannel();
+
+        long position = 0;
+        while (position < length)
+        {
+            buffer.clear();
+            buffer.limit((int)Math.min(bufferSize, length - position));
+            int read = channel.read(buffer, position);
+            if (read < 0)
+            {
+                break;
+            }
+            buffer.flip();
+            crc.update(buffer);
+            position += read;
+        }
+
+        return crc.getValue();
+    }
+
+    /**
+     * CRC32 of the first length bytes of a stream
+     */
+    private static long checksum(InputStream in, long length) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[bufferSize];
+
+        long remaining = length;
+        while (remaining > 0)
+        {
+            int read = in.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+            if (read < 0)
+            {
+                break;
+            }
+            crc.update(buffer, 0, read);
+            remaining -= read;
+        }
+
+        return crc.getValue();
+    }
+}
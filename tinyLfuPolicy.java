@@ -0,0 +1,164 @@
+/**
+ * TinyLFU admission in front of LRU replacement for the buffer pool
+ *
+ * every lookup is counted in a count-min sketch: 4 rows of 4 bit counters, each row indexed
+ * by a different hash of the offset, the estimate being the smallest of the 4 counters. when
+ * the pool is full its LRU record is the candidate victim, and a new record only takes its
+ * place if the sketch says the new record has been asked for more often. a scan of records
+ * that are each read once cannot push out records that are read over and over
+ *
+ * the counters are halved every sampleSize lookups so the sketch follows changes in what is
+ * popular rather than remembering the whole run
+ *
+ * @author mason gelletly
+ * @version 5.15.22
+ */
+public class tinyLfuPolicy implements poolPolicy
+{
+    // rows of the sketch and the largest value of a 4 bit counter
+    private static final int depth = 4;
+    private static final int maxCount = 15;
+
+    // per row hash seeds
+    private static final long[] seeds = { 0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL,
+        0x165667B19E3779F9L, 0xD6E8FEB86659FD93L };
+
+    // counters, two per byte
+    private byte[][] sketch;
+    private int mask;
+
+    // lookups counted since the last halving
+    private int additions = 0;
+    private int sampleSize;
+
+    /**
+     * constructor, sizes the sketch from the pool capacity
+     *
+     * @param capacity : most records the pool holds
+     */
+    public tinyLfuPolicy(int capacity)
+    {
+        // at least 4 counters per pooled record, a power of two
+        int width = Integer.highestOneBit(Math.max(64, capacity * 4) - 1) << 1;
+        mask = width - 1;
+        sketch = new byte[depth][width / 2];
+        sampleSize = Math.max(150, capacity * 10);
+    }
+
+    @Override
+    public void onAccess(Long offset)
+    {
+        // bump every row's counter, saturating at the top
+        for (int row = 0; row < depth; row++)
+        {
+            int slot = slot(offset, row);
+            if (get(row, slot) < maxCount)
+            {
+                set(row, slot, get(row, slot) + 1);
+            }
+        }
+
+        // age the counts
+        if (++additions == sampleSize)
+        {
+            halve();
+        }
+    }
+
+    @Override
+    public void onHit(Long offset)
+    {
+        // counted in onAccess
+    }
+
+    @Override
+    public Long victim(Long lruOffset)
+    {
+        return lruOffset;
+    }
+
+    @Override
+    public boolean admit(Long offset, Long victim)
+    {
+        // ties keep the record already pooled
+        return frequency(offset) > frequency(victim);
+    }
+
+    @Override
+    public void onInsert(Long offset)
+    {
+        // nothing to track
+    }
+
+    @Override
+    public void onEvict(Long offset)
+    {
+        // nothing to track
+    }
+
+    @Override
+    public String name()
+    {
+        return "tinylfu";
+    }
+
+    /**
+     * estimated number of recent lookups of an offset
+     *
+     * @param offset : the record
+     * @return the smallest of its counters
+     */
+    public int frequency(Long offset)
+    {
+        int estimate = maxCount;
+        for (int row = 0; row < depth; row++)
+        {
+            estimate = Math.min(estimate, get(row, slot(offset, row)));
+        }
+
+        return estimate;
+    }
+
+    /**
+     * halves every counter
+     */
+    private void halve()
+    {
+        for (byte[] currRow : sketch)
+        {
+            for (int idx = 0; idx < currRow.length; idx++)
+            {
+                // both nibbles at once, dropping the bit that would cross between them
+                currRow[idx] = (byte)((currRow[idx] >> 1) & 0x77);
+            }
+        }
+
+        additions /= 2;
+    }
+
+    /**
+     * counter index of an offset within a row
+     */
+    private int slot(Long offset, int row)
+    {
+        long hash = (offset + seeds[row]) * seeds[(row + 1) % depth];
+        return (int)(hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * reads a 4 bit counter
+     */
+    private int get(int row, int slot)
+    {
+        return (sketch[row][slot >> 1] >> ((slot & 1) << 2)) & 0xF;
+    }
+
+    /**
+     * writes a 4 bit counter
+     */
+    private void set(int row, int slot, int value)
+    {
+        int shift = (slot & 1) << 2;
+        sketch[row][slot >> 1] = (byte)((sketch[row][slot >> 1] & ~(0xF << shift)) | (value << shift));
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * 2Q replacement for the buffer pool (Johnson and Shasha)
+ *
+ *      a1in  : FIFO of records seen once, about a quarter of the pool
+ *      am    : LRU of records that have been asked for more than once
+ *      a1out : offsets (no records) recently pushed out of a1in, about half the pool
+ *
+ * a new record enters a1in. a record that is asked for again, while it is still in a1in or
+ * while its offset is still remembered in a1out, has proven itself and moves to am. when
+ * the pool is full, a1in gives up its oldest record while it is over its share, otherwise
+ * am gives up its least recently used record. a large one-off result therefore only ever
+ * churns a1in and leaves the hot records in am alone
+ *
+ * this is the variant of 2Q that promotes on any second hit. the full version leaves hits
+ * inside a1in alone, which suits page caches with bursts of correlated references but keeps
+ * GIS records that are simply popular out of am
+ *
+ * @author mason gelletly
+ * @version 5.15.22
+ */
+public class twoQueuePolicy implements poolPolicy
+{
+    // queue sizes
+    private int inLimit;
+    private int outLimit;
+
+    // iteration order of each set is oldest / least recently used first
+    private LinkedHashSet<Long> a1in = new LinkedHashSet<Long>();
+    private LinkedHashSet<Long> am = new LinkedHashSet<Long>();
+    private LinkedHashSet<Long> a1out = new LinkedHashSet<Long>();
+
+    /**
+     * constructor, sizes the queues from the pool capacity
+     *
+     * @param capacity : most records the pool holds
+     */
+    public twoQueuePolicy(int capacity)
+    {
+        inLimit = Math.max(1, capacity / 4);
+        outLimit = Math.max(1, capacity / 2);
+    }
+
+    @Override
+    public void onAccess(Long offset)
+    {
+        // reuse is judged on insert and hit
+    }
+
+    @Override
+    public void onHit(Long offset)
+    {
+        // second hit of an a1in record promotes it, am hits move to the MRU end
+        if (a1in.remove(offset) || am.remove(offset))
+        {
+            am.add(offset);
+        }
+    }
+
+    @Override
+    public Long victim(Long lruOffset)
+    {
+        // a1in over its share (or am empty) gives up its oldest record
+        if (!a1in.isEmpty() && (a1in.size() > inLimit || am.isEmpty()))
+        {
+            return a1in.iterator().next();
+        }
+        if (!am.isEmpty())
+        {
+            return am.iterator().next();
+        }
+
+        return lruOffset;
+    }
+
+    @Override
+    public boolean admit(Long offset, Long victim)
+    {
+        return true;
+    }
+
+    @Override
+    public void onInsert(Long offset)
+    {
+        // remembered from a1out, this is the second time it has been needed
+        if (a1out.remove(offset))
+        {
+            am.add(offset);
+        }
+        else
+        {
+            a1in.add(offset);
+        }
+    }
+
+    @Override
+    public void onEvict(Long offset)
+    {
+        // records leaving a1in are remembered by offset only
+        if (a1in.remove(offset))
+        {
+            a1out.add(offset);
+            if (a1out.size() > outLimit)
+            {
+                Iterator<Long> oldest = a1out.iterator();
+                oldest.next();
+                oldest.remove();
+            }
+        }
+        else
+        {
+            am.remove(offset);
+        }
+    }
+
+    @Override
+    public String name()
+    {
+        return "2q";
+    }
+}